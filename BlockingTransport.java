@@ -0,0 +1,28 @@
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * transport แบบเดิม: ServerSocket.accept() และหนึ่ง thread ต่อหนึ่ง client
+ * (เป็น virtual thread เมื่อเปิด Server.virtualThreads)
+ */
+public class BlockingTransport implements Transport {
+
+    @Override
+    public void serve(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                System.out.println("New client connected");
+                try {
+                    PlayerHandler.ClientHandler handler = new PlayerHandler.ClientHandler(socket);
+                    int playerId = Server.onConnect(handler);
+                    Server.threadBuilder("client-" + playerId).start(handler);
+                } catch (IOException e) {
+                    System.out.println("Handshake failed: " + e.getMessage());
+                    try { socket.close(); } catch (IOException ignored) {}
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * benchmark การหาผู้เล่นที่ชนกันต่อหนึ่ง tick
+ *
+ * naive = แบบเดิม: ผู้เล่นทุกคนเทียบกับทุกคน (checkTag + checkPlayerCollisions ต่อคนที่ขยับ)
+ * hash  = PlayerSpatialHash สร้างใหม่ทุก tick แล้วตรวจ hit เฉพาะคู่ที่ได้
+ *
+ * ความหนาแน่นคงที่เท่ากับแผนที่ 1000x600 ที่มีผู้เล่น 8 คน (แผนที่ขยายตามจำนวนผู้เล่น)
+ *
+ * วิธีใช้: java BroadPhaseBenchmark [จำนวนผู้เล่น...]
+ */
+public class BroadPhaseBenchmark {
+
+    private static final double AREA_PER_PLAYER = (double) Server.MAP_WIDTH * Server.MAP_HEIGHT / 8;
+
+    public static void main(String[] args) {
+        int[] counts = {8, 32, 128, 512, 2000};
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; i++) counts[i] = Integer.parseInt(args[i]);
+        }
+
+        System.out.printf("%-8s %12s %12s %10s %8s%n", "players", "naive us", "hash us", "pairs", "speedup");
+        for (int n : counts) {
+            List<PlayerHandler.Player> players = randomPlayers(n, new Random(n));
+            PlayerSpatialHash hash = new PlayerSpatialHash();
+            int iterations = Math.max(200, 20_000_000 / (n * n));
+
+            // warm-up ให้ JIT คอมไพล์ทั้งสองแบบก่อน
+            for (int i = 0; i < iterations; i++) {
+                naive(players);
+                hashed(players, hash);
+            }
+
+            long t0 = System.nanoTime();
+            int naiveHits = 0;
+            for (int i = 0; i < iterations; i++) naiveHits += naive(players);
+            long t1 = System.nanoTime();
+            int hashHits = 0;
+            for (int i = 0; i < iterations; i++) hashHits += hashed(players, hash);
+            long t2 = System.nanoTime();
+
+            if (naiveHits / 2 != hashHits) {
+                throw new IllegalStateException("hit count mismatch: " + naiveHits / 2 + " vs " + hashHits);
+            }
+            double naiveUs = (t1 - t0) / 1000.0 / iterations;
+            double hashUs = (t2 - t1) / 1000.0 / iterations;
+            System.out.printf("%-8d %12.1f %12.1f %10d %7.1fx%n", n, naiveUs, hashUs, hash.build(players), naiveUs / hashUs);
+        }
+    }
+
+    static List<PlayerHandler.Player> randomPlayers(int n, Random rand) {
+        int side = (int) Math.sqrt(AREA_PER_PLAYER * n);
+        List<PlayerHandler.Player> players = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            players.add(new PlayerHandler.Player(i, rand.nextInt(side), rand.nextInt(side), i == 0));
+        }
+        return players;
+    }
+
+    // ทุกคนเทียบกับทุกคน (นับคู่ซ้ำทั้งสองทิศทางเหมือนโค้ดเดิม)
+    static int naive(List<PlayerHandler.Player> players) {
+        int hits = 0;
+        for (PlayerHandler.Player a : players) {
+            for (PlayerHandler.Player b : players) {
+                if (a.id != b.id && PlayerHandler.hit(a, b)) hits++;
+            }
+        }
+        return hits;
+    }
+
+    static int hashed(List<PlayerHandler.Player> players, PlayerSpatialHash hash) {
+        int hits = 0;
+        int pairs = hash.build(players);
+        for (int k = 0; k < pairs; k++) {
+            if (PlayerHandler.hit(players.get(hash.pairA(k)), players.get(hash.pairB(k)))) hits++;
+        }
+        return hits;
+    }
+}
\ No newline at end of file
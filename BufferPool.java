@@ -0,0 +1,48 @@
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * pool ของ direct ByteBuffer ขนาดคงที่ ใช้ซ้ำระหว่างการอ่าน/เขียนของ NioTransport
+ * (การจอง direct buffer ใหม่มีราคาแพง และไม่ถูกเก็บโดย GC ทันที)
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * คืนค่า buffer ที่ว่าง (position = 0, limit = capacity)
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buf = free.poll();
+        if (buf == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        return buf;
+    }
+
+    public void release(ByteBuffer buf) {
+        // view อ่านอย่างเดียวของ payload ที่ใช้ร่วมกัน ไม่ใช่ของ pool (คืนผ่าน OutboundQueue.Frame.releaseDirect)
+        if (buf == null || buf.isReadOnly() || buf.capacity() != bufferSize) return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buf.clear();
+        free.offer(buf);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+/**
+ * การเชื่อมต่อกับ client หนึ่งราย มองจากฝั่ง Server
+ * (Server ไม่จำเป็นต้องรู้ว่าเบื้องหลังเป็น socket แบบ blocking หรือ NIO)
+ */
+public interface ClientConnection {
+
+    /**
+     * ส่ง handshake ของ WireProtocol ต้องเรียกครั้งเดียวก่อน frame อื่นทั้งหมด
+     */
+    void sendHandshake(int playerId);
+
+    /**
+     * ส่งหนึ่ง frame ไปยัง client (เรียกจาก game loop)
+     * ต้องไม่ block: frame ถูกใส่ลง outbound() แล้วให้ writer ของ transport เขียนทีหลัง
+     * payload ห้ามถูกแก้ไขหลังส่ง เพราะอาจถูกใช้ร่วมกันหลาย client
+     */
+    void sendFrame(byte type, byte[] payload);
+
+    /**
+     * ส่ง frame ที่สร้างไว้แล้ว ใช้เมื่อส่ง frame เดียวกันให้หลาย client (เช่น snapshot, chunk)
+     * transport ที่รองรับจะใช้ direct buffer ของ frame ร่วมกันแทนการคัดลอก payload ต่อ client
+     */
+    default void send(OutboundQueue.Frame frame) {
+        sendFrame(frame.type, frame.payload);
+    }
+
+    /**
+     * คิวขาออกของการเชื่อมต่อนี้ (ดูความลึกของคิวและจำนวน snapshot ที่ถูกทิ้งได้จากที่นี่)
+     */
+    OutboundQueue outbound();
+
+    void close();
+}
\ No newline at end of file
@@ -2,12 +2,21 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.image.BufferStrategy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.imageio.ImageIO;
 import java.awt.Image;
@@ -16,20 +25,55 @@ import java.net.URL;
 
 public class ClientGame {
 
-    public static final int MAP_WIDTH = 1000;
-    public static final int MAP_HEIGHT = 600;
+    // ขนาดจอ (แผนที่ใหญ่กว่านี้ได้ กล้องเลื่อนตามเรา)
+    public static final int VIEW_WIDTH = Server.VIEW_WIDTH;
+    public static final int VIEW_HEIGHT = Server.VIEW_HEIGHT;
+
+    // วาดเองบน Canvas + BufferStrategy จาก render thread แทน repaint() ของ Swing
+    public static boolean activeRender = Boolean.getBoolean("tag.activeRender");
+    // เพดาน FPS ของ active render (0 = ตามอัตรารีเฟรชของจอ)
+    public static int maxFps = Integer.getInteger("tag.maxFps", 0);
+    // ขอรับ snapshot และส่ง input ทาง UDP (ถ้า server เปิดไว้) ส่วน lobby / READY / จบเกมยังใช้ TCP
+    public static boolean useUdp = Boolean.getBoolean("tag.udp");
+
+    private static final Font TIMER_FONT = new Font("Arial", Font.BOLD, 36);
 
     private final Socket socket;
-    private final ObjectInputStream in;
-    private final ObjectOutputStream out;
+    private final DataInputStream in;
+    private final DataOutputStream out;
     private final int myId;
+    private final String roomName;
+    // tick ต่อวินาทีของห้องจาก MSG_ROOM (ส่ง input ตามจังหวะนี้)
+    private int tickRate = Server.DEFAULT_TICK_RATE;
     private volatile boolean running = true;
+    // null = ใช้ TCP อย่างเดียว
+    private volatile UdpClient udp;
+    // seq ของ snapshot ล่าสุดที่ใช้ไปแล้ว (snapshot ทาง UDP มาสลับลำดับได้ อันที่เก่ากว่านี้ถูกทิ้ง)
+    private int latestSeq = 0;
+
+    // ผู้เล่นจาก snapshot ที่ได้รับ วาดย้อนหลังเล็กน้อยแบบ interpolation
+    private final SnapshotInterpolator interpolator = new SnapshotInterpolator();
+
+    // snapshot ที่ได้รับแล้ว (index = seq % SNAPSHOT_HISTORY) ใช้ประกอบ delta จาก server
+    private final PlayerHandler.GameState[] snapshotHistory = new PlayerHandler.GameState[WireProtocol.SNAPSHOT_HISTORY];
 
-    private final java.util.List<PlayerHandler.Player> players = Collections.synchronizedList(new ArrayList<>());
-    private final java.util.List<Obstacle> obstacles = Collections.synchronizedList(new ArrayList<>());
+    // ตำแหน่งของเราเองที่ทำนายไว้ล่วงหน้า (ไม่ต้องรอ round trip ถึงจะเห็นตัวเองขยับ)
+    private final ClientPrediction prediction = new ClientPrediction();
 
-    private int lastRemaining = 60;
-    private Panel panel;
+    // ขนาดแผนที่จาก MSG_WORLD และ chunk ของสิ่งกีดขวางที่ server ส่งมา (เฉพาะรอบๆ จอ) ใช้จาก listenServer เท่านั้น
+    private volatile int worldWidth = Server.MAP_WIDTH;
+    private volatile int worldHeight = Server.MAP_HEIGHT;
+    private int chunkSize = WorldChunks.chunkSize;
+    private final Map<Long, List<Obstacle>> chunks = new HashMap<>();
+    // chunks เปลี่ยนแต่ยังไม่ได้สร้างผัง/grid ใหม่ (server ส่ง chunk มาทีละหลายอันใน tick เดียว)
+    private boolean layoutDirty = false;
+    // มุมซ้ายบนของกล้องในพิกัดแผนที่ (ใช้จาก EDT / render thread)
+    private int cameraX = 0;
+    private int cameraY = 0;
+
+    private volatile int lastRemaining = 60;
+    // Panel (passive) หรือ RenderCanvas (active)
+    private Component screen;
     private JFrame frame;
 
     private JButton readyButton;
@@ -41,54 +85,85 @@ public class ClientGame {
     private volatile boolean isPressingRight = false;
 
     // --- ส่วนของการโหลดรูปภาพ (ย้ายมารวมกัน) ---
-    private Image bgImage;
-    private Image playerTaggerImg;
-    private Image playerRunnerImg;
-    private Image[] obstacleImages;
+    // รูปที่ย่อขนาดไว้แล้ว + ชั้นพื้นหลังที่รวมสิ่งกีดขวาง
+    private SpriteCache sprites;
+
+    // ของที่ใช้ซ้ำทุกเฟรม (เฟรมปกติไม่จองหน่วยความจำใหม่) ใช้จาก thread ที่วาดเท่านั้น
+    private final SnapshotInterpolator.View view = new SnapshotInterpolator.View();
+    private String[] labels = new String[8];
+    private int[] labelIds = new int[8];
+    private int[] labelScores = new int[8];
+    private String timeLabel = "";
+    private int timeLabelSeconds = -1;
     //----------------con
     public ClientGame(String host, int port) throws IOException {
+        this(host, port, "");
+    }
+
+    /**
+     * @param room ชื่อห้องที่จะเข้า (สร้างใหม่ถ้ายังไม่มี) หรือค่าว่างเพื่อ quick match
+     */
+    public ClientGame(String host, int port, String room) throws IOException {
 
         socket = new Socket(host, port);
-        out = new ObjectOutputStream(socket.getOutputStream());
-        out.flush();
-        in = new ObjectInputStream(socket.getInputStream());
-        myId = in.readInt();
-        System.out.println("My ID: " + myId);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        myId = WireProtocol.readHandshake(in);
+        ByteBuffer udpOffer = useUdp ? requestUdp() : null;
+        roomName = joinRoom(room);
+        System.out.println("My ID: " + myId + " (room " + roomName + ")");
         loadImages();
-        frame = new JFrame("Tag Game - Client " + myId);
-        panel = new Panel();
-        panel.setPreferredSize(new Dimension(MAP_WIDTH, MAP_HEIGHT));
-        panel.setFocusable(true);
+        frame = new JFrame("Tag Game - Client " + myId + " - " + roomName);
+        screen = activeRender ? new RenderCanvas() : new Panel();
+        screen.setPreferredSize(new Dimension(VIEW_WIDTH, VIEW_HEIGHT));
+        screen.setFocusable(true);
         frame.setLayout(new BorderLayout());
         readyButton = new JButton("I'm Ready!");
         readyButton.setFont(new Font("Arial", Font.BOLD, 24));
         readyButton.addActionListener(e -> {
             try {
-                out.writeObject("READY");
-                out.flush();
+                sendCommand(WireProtocol.OP_READY);
                 readyButton.setEnabled(false);
                 readyButton.setText("Waiting for others...");
-                panel.requestFocusInWindow();
+                screen.requestFocusInWindow();
             } catch (IOException ioException) {
                 ioException.printStackTrace();
             }
         });
         JPanel southPanel = new JPanel();
         southPanel.add(readyButton);
-        frame.add(panel, BorderLayout.CENTER);
+        frame.add(screen, BorderLayout.CENTER);
         frame.add(southPanel, BorderLayout.SOUTH);
+        // server ส่ง chunk ตามขนาดจอที่ตายตัว ขยายหน้าต่างไม่ได้
+        frame.setResizable(false);
         frame.pack();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
-        panel.requestFocusInWindow();
+        screen.requestFocusInWindow();
+        // วาดใหม่ตามอัตรารีเฟรชของจอ ไม่ใช่ตามจังหวะที่ snapshot มาถึง
+        if (screen instanceof RenderCanvas) {
+            ((RenderCanvas) screen).startRendering(maxFps > 0 ? maxFps : refreshRate());
+        } else {
+            new Timer(1000 / refreshRate(), e -> screen.repaint()).start();
+        }
         Thread listenThread = new Thread(this::listenServer);
         listenThread.setDaemon(true);
         listenThread.start();
+        if (udpOffer != null) {
+            int udpPort = udpOffer.getShort() & 0xFFFF;
+            int token = udpOffer.getInt();
+            if (udpPort != 0) {
+                udp = new UdpClient(host, udpPort, myId, token, this::onUdpSnapshot);
+            } else {
+                System.out.println("Server has UDP disabled, staying on TCP");
+            }
+        }
         Thread inputThread = new Thread(this::sendInput);
         inputThread.setDaemon(true);
         inputThread.start();
-        panel.addKeyListener(new KeyListener() {
+        screen.addKeyListener(new KeyListener() {
             @Override
             public void keyTyped(KeyEvent e) {}
             @Override
@@ -112,15 +187,23 @@ public class ClientGame {
         });
     }
 
+    private static int refreshRate() {
+        try {
+            int hz = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+            if (hz != DisplayMode.REFRESH_RATE_UNKNOWN) return hz;
+        } catch (HeadlessException ignored) {}
+        return 60;
+    }
+
     private void loadImages() {
         // (โค้ดส่วนนี้เหมือนเดิม)
-        bgImage = loadImage("background.png");
-        playerTaggerImg = loadImage("player_tagger.png");
-        playerRunnerImg = loadImage("player_runner.png");
-        obstacleImages = new Image[3];
+        Image[] obstacleImages = new Image[3];
         obstacleImages[0] = loadImage("obstacle_0.png");
         obstacleImages[1] = loadImage("obstacle_1.png");
         obstacleImages[2] = loadImage("obstacle_2.png");
+        sprites = new SpriteCache(loadImage("background.png"), loadImage("player_tagger.png"),
+                loadImage("player_runner.png"), obstacleImages);
     }
 
     private Image loadImage(String fileName) {
@@ -147,81 +230,231 @@ public class ClientGame {
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
+            renderFrame((Graphics2D) g, getWidth(), getHeight(), getGraphicsConfiguration());
+        }
+    }
 
-            // 1. วาดพื้นหลัง
-            if (bgImage != null) {
-                g.drawImage(bgImage, 0, 0, getWidth(), getHeight(), this);
-            } else {
-                g.setColor(Color.LIGHT_GRAY);
-                g.fillRect(0, 0, getWidth(), getHeight());
+    /**
+     * active render: วาดจาก render thread ของตัวเองลง BufferStrategy แล้ว show()
+     * เว้นจังหวะให้ได้ fps ที่กำหนด ถ้า show() รอ vsync อยู่แล้วก็จะนอนน้อยลงเอง
+     */
+    class RenderCanvas extends Canvas {
+        private static final long serialVersionUID = 1L;
+
+        RenderCanvas() {
+            // ไม่ให้ AWT สั่งวาด/ล้างจอเอง
+            setIgnoreRepaint(true);
+        }
+
+        // เรียกหลังจาก frame แสดงผลแล้ว (ต้อง displayable ก่อนสร้าง BufferStrategy)
+        void startRendering(int fps) {
+            try {
+                // ขอ page flipping ถ้าทำได้ (ส่วนใหญ่จะ sync กับ vsync ตอน show())
+                createBufferStrategy(2, new BufferCapabilities(new ImageCapabilities(true),
+                        new ImageCapabilities(true), BufferCapabilities.FlipContents.UNDEFINED));
+            } catch (AWTException e) {
+                createBufferStrategy(2);
             }
+            Thread renderThread = new Thread(() -> renderLoop(fps), "render");
+            renderThread.setDaemon(true);
+            renderThread.start();
+        }
 
-            // 2. วาดสิ่งกีดขวาง (เหมือนเดิม)
-            synchronized (obstacles) {
-                for (Obstacle o : obstacles) {
-                    Image obsImg = obstacleImages[o.type];
-                    if (obsImg != null) {
-                        g.drawImage(obsImg, o.x, o.y, o.width, o.height, null);
-                    } else {
-                        g.setColor(Color.DARK_GRAY);
-                        g.fillRect(o.x, o.y, o.width, o.height);
-                    }
+        private void renderLoop(int fps) {
+            BufferStrategy strategy = getBufferStrategy();
+            long period = 1_000_000_000L / fps;
+            long next = System.nanoTime();
+            while (running) {
+                do {
+                    do {
+                        Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                        try {
+                            renderFrame(g, getWidth(), getHeight(), getGraphicsConfiguration());
+                        } finally {
+                            g.dispose();
+                        }
+                    } while (strategy.contentsRestored());
+                    strategy.show();
+                } while (strategy.contentsLost());
+                Toolkit.getDefaultToolkit().sync();
+
+                next += period;
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    LockSupport.parkNanos(sleep);
+                } else if (sleep < -period) {
+                    // ช้าไปเกินหนึ่งเฟรม ไม่ต้องเร่งวาดชดเชย
+                    next = System.nanoTime();
                 }
             }
+        }
+    }
 
-            // 3. วาดผู้เล่น
-            synchronized (players) {
-                for (PlayerHandler.Player p : players) {
-                    Image playerImg = p.isTagger ? playerTaggerImg : playerRunnerImg;
-
-                    // --- ★★★ แก้ไขการวาดผู้เล่น ★★★ ---
-                    if (playerImg != null) {
-                        // (ของเดิม: g.drawImage(playerImg, p.x, p.y, null);)
-                        // แก้เป็น:
-                        g.drawImage(playerImg, p.x, p.y,
-                                PlayerHandler.PLAYER_SIZE, PlayerHandler.PLAYER_SIZE, null);
-                    } else {
-                        // (สำรอง)
-                        g.setColor(p.isTagger ? Color.RED : Color.BLUE);
-                        g.fillRect(p.x, p.y, PlayerHandler.PLAYER_SIZE, PlayerHandler.PLAYER_SIZE);
-                    }
-                    // --- สิ้นสุดการแก้ไข ---
+    /**
+     * วาดหนึ่งเฟรม (ใช้ทั้ง Panel และ RenderCanvas)
+     * ใช้ view/label ที่เก็บไว้ซ้ำ เฟรมปกติจึงไม่สร้าง object ใหม่
+     */
+    private void renderFrame(Graphics2D g, int width, int height, GraphicsConfiguration gc) {
+        interpolator.sample(System.nanoTime(), view);
+        boolean predicted = prediction.hasPosition();
+        updateCamera(predicted, width, height);
 
-                    // (วาดชื่อ)
-                    g.setColor(Color.BLACK);
-                    g.drawString(p.name + " (" + p.score + ")", p.x, p.y - 5);
-                }
+        // 1-2. วาดพื้นหลังและสิ่งกีดขวาง (วาดรวมไว้ล่วงหน้าใน SpriteCache)
+        sprites.drawBackground(g, width, height, gc, cameraX, cameraY);
+
+        // 3. วาดผู้เล่น
+        g.setColor(Color.BLACK);
+        for (int i = 0; i < view.count; i++) {
+            int x = view.x[i];
+            int y = view.y[i];
+            if (view.id[i] == myId && predicted) {
+                // ตัวเราเองวาดที่ตำแหน่งที่ทำนายไว้ (ไม่ย้อนหลัง)
+                x = prediction.displayX();
+                y = prediction.displayY();
             }
+            x -= cameraX;
+            y -= cameraY;
+            // (รูปถูกย่อเป็น PLAYER_SIZE ไว้แล้ว วาดขนาดจริงได้เลย)
+            sprites.drawPlayer(g, view.tagger[i], x, y);
+
+            // (วาดชื่อ)
+            g.drawString(labelFor(i), x, y - 5);
+        }
 
-            // 4. วาด UI (เวลา)
-            if (localGameStarted) {
-                // (โค้ดส่วนนี้เหมือนเดิม)
-                g.setColor(Color.WHITE);
-                g.setFont(new Font("Arial", Font.BOLD, 36));
-                String time = String.format("%02d:%02d", lastRemaining / 60, lastRemaining % 60);
-                g.drawString(time, MAP_WIDTH - 120, 40);
+        // 4. วาด UI (เวลา)
+        if (localGameStarted) {
+            int remaining = lastRemaining;
+            if (remaining != timeLabelSeconds) {
+                timeLabel = String.format("%02d:%02d", remaining / 60, remaining % 60);
+                timeLabelSeconds = remaining;
             }
+            g.setColor(Color.WHITE);
+            g.setFont(TIMER_FONT);
+            g.drawString(timeLabel, width - 120, 40);
+        }
+    }
+
+    // กล้องตามตัวเรา (ตำแหน่งที่ทำนายไว้ ถ้ายังไม่มีใช้จาก snapshot) ยังไม่เห็นตัวเอง = กล้องอยู่ที่เดิม
+    private void updateCamera(boolean predicted, int width, int height) {
+        int x;
+        int y;
+        if (predicted) {
+            x = prediction.displayX();
+            y = prediction.displayY();
+        } else {
+            int i = 0;
+            while (i < view.count && view.id[i] != myId) i++;
+            if (i == view.count) return;
+            x = view.x[i];
+            y = view.y[i];
+        }
+        cameraX = WorldChunks.cameraOrigin(x, width, worldWidth);
+        cameraY = WorldChunks.cameraOrigin(y, height, worldHeight);
+    }
+
+    // ข้อความ "ชื่อ (คะแนน)" สร้างใหม่เฉพาะตอนผู้เล่นในช่องนั้นเปลี่ยนหรือคะแนนเปลี่ยน
+    private String labelFor(int i) {
+        if (labels.length <= i) {
+            int cap = Math.max(i + 1, labels.length * 2);
+            labels = Arrays.copyOf(labels, cap);
+            labelIds = Arrays.copyOf(labelIds, cap);
+            labelScores = Arrays.copyOf(labelScores, cap);
+        }
+        if (labels[i] == null || labelIds[i] != view.id[i] || labelScores[i] != view.score[i]) {
+            labels[i] = view.name[i] + " (" + view.score[i] + ")";
+            labelIds[i] = view.id[i];
+            labelScores[i] = view.score[i];
+        }
+        return labels[i];
+    }
+
+
+    /**
+     * ส่ง opcode หนึ่งไบต์ไปยัง server (เรียกได้ทั้งจาก EDT และ input thread)
+     */
+    private synchronized void sendCommand(byte opcode) throws IOException {
+        WireProtocol.writeFrame(out, opcode, new byte[0]);
+        out.flush();
+    }
+
+    private synchronized void sendAck(int seq) throws IOException {
+        if (udp != null && udp.isEstablished()) {
+            udp.sendAck(seq);
+            return;
         }
+        WireProtocol.writeFrame(out, WireProtocol.OP_ACK, WireProtocol.encodeAck(seq));
+        out.flush();
     }
 
+    /**
+     * ขั้นตอน lobby: ขอใช้ UDP แล้วรอ MSG_UDP [u16 port][i32 token]
+     */
+    private ByteBuffer requestUdp() throws IOException {
+        WireProtocol.writeFrame(out, WireProtocol.OP_UDP, new byte[0]);
+        out.flush();
+        ByteBuffer reply = WireProtocol.readFrame(in);
+        if (reply.get() != WireProtocol.MSG_UDP) {
+            throw new IOException("Expected UDP reply from server");
+        }
+        return reply;
+    }
+
+    /**
+     * ขั้นตอน lobby: ขอเข้าห้องแล้วรอ MSG_ROOM (server ยังไม่ส่ง frame อื่นจนกว่าจะได้ห้อง)
+     */
+    private String joinRoom(String room) throws IOException {
+        WireProtocol.writeFrame(out, WireProtocol.OP_JOIN, WireProtocol.encodeJoin(room));
+        out.flush();
+        ByteBuffer reply = WireProtocol.readFrame(in);
+        if (reply.get() != WireProtocol.MSG_ROOM) {
+            throw new IOException("Expected room reply from server");
+        }
+        String name = WireProtocol.decodeRoom(reply);
+        tickRate = Math.max(1, reply.getShort() & 0xFFFF);
+        return name;
+    }
+
+    private synchronized void sendInputFrame(int seq, int buttons) throws IOException {
+        if (udp != null && udp.isEstablished()) {
+            udp.sendInput(seq, buttons);
+            return;
+        }
+        WireProtocol.writeFrame(out, WireProtocol.OP_INPUT, WireProtocol.encodeInput(seq, buttons));
+        out.flush();
+    }
+
+    private PlayerHandler.GameState historyAt(int seq) {
+        PlayerHandler.GameState gs = snapshotHistory[seq % snapshotHistory.length];
+        return (gs != null && gs.seq == seq) ? gs : null;
+    }
 
     private void sendInput() {
-        // (โค้ดส่วนนี้เหมือนเดิม)
+        // ส่งปุ่มที่กดค้างทั้งหมดเป็น bitmask tick ละหนึ่ง frame (เดินทแยงได้)
+        // นับเวลาจาก deadline ไม่ใช่ sleep คงที่ จังหวะจึงไม่เลื่อนไปจาก tick ของห้อง
         try {
+            int seq = 0;
+            long period = 1_000_000_000L / tickRate;
+            long next = System.nanoTime();
             while (running) {
-                String cmd = null;
-                if (isPressingUp) cmd = "UP";
-                else if (isPressingDown) cmd = "DOWN";
-                else if (isPressingLeft) cmd = "LEFT";
-                else if (isPressingRight) cmd = "RIGHT";
-
-                if (cmd != null && localGameStarted) {
-                    out.writeObject(cmd);
-                    out.flush();
+                int buttons = 0;
+                if (isPressingUp) buttons |= WireProtocol.INPUT_UP;
+                if (isPressingDown) buttons |= WireProtocol.INPUT_DOWN;
+                if (isPressingLeft) buttons |= WireProtocol.INPUT_LEFT;
+                if (isPressingRight) buttons |= WireProtocol.INPUT_RIGHT;
+
+                if (buttons != 0 && localGameStarted) {
+                    sendInputFrame(++seq, buttons);
+                    prediction.applyLocal(seq, buttons);
                 }
 
-                Thread.sleep(1000 / 30);
+                next += period;
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    LockSupport.parkNanos(sleep);
+                } else if (sleep < -period) {
+                    // ช้าไปเกินหนึ่ง tick ไม่ต้องส่งชดเชย (ห้องใช้ได้แค่ tick ละ frame อยู่แล้ว)
+                    next = System.nanoTime();
+                }
             }
         } catch (Exception e) {
             System.out.println("Input thread error: " + e.getMessage());
@@ -232,24 +465,36 @@ public class ClientGame {
         // (โค้ดส่วนนี้เหมือนเดิม)
         try {
             while (running) {
-                PlayerHandler.GameState gs = (PlayerHandler.GameState) in.readObject();
+                ByteBuffer data = WireProtocol.readFrame(in);
+                byte type = data.get();
+                if (type == WireProtocol.MSG_WORLD) {
+                    worldWidth = data.getInt();
+                    worldHeight = data.getInt();
+                    // server เป็นคนเลือก chunk ให้ ขนาดใช้แค่กำหนดช่วงของ grid ที่ใช้ทำนาย
+                    chunkSize = data.getShort() & 0xFFFF;
+                    chunks.clear();
+                    layoutDirty = true;
+                } else if (type == WireProtocol.MSG_CHUNK) {
+                    long key = WorldChunks.key(data.getInt(), data.getInt());
+                    chunks.put(key, WireProtocol.decodeObstacles(data));
+                    layoutDirty = true;
+                } else if (type == WireProtocol.MSG_CHUNK_DROP) {
+                    chunks.remove(WorldChunks.key(data.getInt(), data.getInt()));
+                    layoutDirty = true;
+                }
+                // สร้างผังใหม่ครั้งเดียวต่อชุด: ก่อน snapshot ที่ตามมาใน tick เดียวกัน
+                // หรือเมื่อไม่มี frame ค้างอยู่แล้ว (snapshot อาจมาทาง UDP)
+                if (layoutDirty && (type == WireProtocol.MSG_SNAPSHOT || in.available() == 0)) {
+                    layoutDirty = false;
+                    onLayoutChanged();
+                }
+                if (type != WireProtocol.MSG_SNAPSHOT) continue;
 
+                PlayerHandler.GameState gs = onSnapshot(data);
                 if (gs != null) {
-                    synchronized (players) { players.clear(); players.addAll(gs.player); }
-                    synchronized (obstacles) { obstacles.clear(); obstacles.addAll(gs.obstacles); }
-                    lastRemaining = gs.remainingSeconds;
                     boolean lastGameOver = gs.gameover;
                     int lastWinner = gs.winnerId;
 
-                    if (gs.gameStarted && !localGameStarted) {
-                        localGameStarted = true;
-                        readyButton.setVisible(false);
-                        frame.validate();
-                        panel.requestFocusInWindow();
-                    }
-
-                    panel.repaint();
-
                     if (lastGameOver) {
                         String msg;
                         if (lastWinner == -1) { msg = "Game Over! (Tie)"; }
@@ -268,11 +513,77 @@ public class ClientGame {
         }
     }
 
+    // รวม chunk ที่มีอยู่เป็นผังเดียว (list ใหม่ทุกครั้ง SpriteCache จึงรู้ว่าต้องวาดชั้นพื้นหลังใหม่)
+    // เรียกผ่าน layoutDirty เท่านั้น ไม่ใช่ทุก frame ของ chunk
+    // grid ที่ใช้ทำนายมีช่องเฉพาะกรอบของ chunk ที่โหลดอยู่ ขนาดจึงขึ้นกับจอ ไม่ใช่ขนาดแผนที่
+    private void onLayoutChanged() {
+        ArrayList<Obstacle> layout = new ArrayList<>();
+        int minCx = Integer.MAX_VALUE;
+        int minCy = Integer.MAX_VALUE;
+        int maxCx = Integer.MIN_VALUE;
+        int maxCy = Integer.MIN_VALUE;
+        for (Map.Entry<Long, List<Obstacle>> chunk : chunks.entrySet()) {
+            layout.addAll(chunk.getValue());
+            long key = chunk.getKey();
+            minCx = Math.min(minCx, WorldChunks.keyX(key));
+            minCy = Math.min(minCy, WorldChunks.keyY(key));
+            maxCx = Math.max(maxCx, WorldChunks.keyX(key));
+            maxCy = Math.max(maxCy, WorldChunks.keyY(key));
+        }
+        sprites.setObstacles(layout);
+        if (layout.isEmpty()) {
+            prediction.setWorld(new ObstacleGrid(layout, worldWidth, worldHeight, 0, 0, 0, 0, ObstacleGrid.DEFAULT_CELL_SIZE));
+            return;
+        }
+        // สิ่งกีดขวางอาจยื่นเลยขอบ chunk ของมันไปได้ แต่พิกัดนอกกรอบถูกปัดเข้าช่องริมขอบ จึงยังตรวจชนได้ถูก
+        prediction.setWorld(new ObstacleGrid(layout, worldWidth, worldHeight,
+                minCx * chunkSize, minCy * chunkSize,
+                (maxCx - minCx + 1) * chunkSize, (maxCy - minCy + 1) * chunkSize,
+                ObstacleGrid.DEFAULT_CELL_SIZE));
+    }
+
+    /**
+     * ใช้ snapshot หนึ่งอัน (จาก TCP หรือ UDP) คืนค่า null ถ้าถูกทิ้ง
+     * snapshot ที่ seq ไม่ใหม่กว่าอันล่าสุดถูกทิ้ง และถ้า baseline ของ delta หายไปแล้วจะรอ keyframe รอบถัดไป
+     */
+    private synchronized PlayerHandler.GameState onSnapshot(ByteBuffer data) throws IOException {
+        // 4 ไบต์แรกของ snapshot คือ seq
+        if (data.getInt(data.position()) <= latestSeq) return null;
+        PlayerHandler.GameState gs = WireProtocol.decodeSnapshot(data, this::historyAt);
+        if (gs == null) return null;
+        latestSeq = gs.seq;
+        snapshotHistory[gs.seq % snapshotHistory.length] = gs;
+        sendAck(gs.seq);
+        interpolator.add(gs.player, System.nanoTime());
+        for (PlayerHandler.Player p : gs.player) {
+            if (p.id == myId) prediction.reconcile(p.x, p.y, p.lastInputSeq);
+        }
+        lastRemaining = gs.remainingSeconds;
+
+        if (gs.gameStarted && !localGameStarted) {
+            localGameStarted = true;
+            readyButton.setVisible(false);
+            frame.validate();
+            screen.requestFocusInWindow();
+        }
+        return gs;
+    }
+
+    // (snapshot ที่จบเกมมาทาง TCP เสมอ จึงไม่ต้องดู gameover ตรงนี้)
+    private void onUdpSnapshot(ByteBuffer data) {
+        try {
+            onSnapshot(data);
+        } catch (IOException e) {
+            System.out.println("Server connection lost: " + e.getMessage());
+        }
+    }
+
     public static void main(String[] args) throws IOException {
         // (โค้dส่วนนี้เหมือนเดิม)
-        String host = "localhost"; int port = 8080;
+        String host = "localhost"; int port = 8080; String room = "";
         if (args.length >= 1) { host = args[0]; }
         if (args.length >= 2) { port = Integer.parseInt(args[1]); }
-        new ClientGame(host, port);
+        if (args.length >= 3) { room = args[2]; }
+        new ClientGame(host, port, room);
     }
 }
\ No newline at end of file
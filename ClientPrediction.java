@@ -0,0 +1,123 @@
+/**
+ * ทำนายตำแหน่งผู้เล่นของเราเองฝั่ง client (client-side prediction + server reconciliation)
+ *
+ * ทุก input ที่ส่งออกไปจะถูกใช้กับตำแหน่งที่ทำนายไว้ทันทีด้วยกติกาเดียวกับ server (Movement)
+ * และเก็บไว้ในบัฟเฟอร์จนกว่า server จะตอบว่าใช้แล้ว (lastInputSeq ใน snapshot)
+ * เมื่อได้ตำแหน่งจริงจาก server จะเริ่มจากตำแหน่งนั้นแล้วเล่น input ที่ยังไม่ถูก ack ซ้ำ
+ *
+ * ถ้าผลที่ได้ต่างจากที่ทำนายไว้ (เช่น ถูกผลัก) จะไม่กระโดดไปทันที แต่เก็บส่วนต่างเป็น offset
+ * ที่ค่อยๆ ลดลงจนเป็นศูนย์ ยกเว้นต่างกันมากเกิน SNAP_DISTANCE (เช่น รีเซ็ตตำแหน่ง) จะวาร์ปเลย
+ *
+ * เรียกจาก input thread, network thread และ EDT พร้อมกันได้ ทุกเมธอดจึง synchronized
+ */
+public final class ClientPrediction {
+
+    // เก็บ input ที่ยังไม่ถูก ack ได้ประมาณ 4 วินาที (ที่ 30 input/s) เกินนี้ทิ้งอันเก่าสุด
+    static final int MAX_PENDING_INPUTS = 128;
+    // เวลาที่ offset ลดลงเหลือ 1/e (ms)
+    static final double SMOOTHING_MS = 100.0;
+    // ถ้าต่างกันเกินระยะนี้ (px) ให้วาร์ปไปตำแหน่งใหม่เลย
+    static final int SNAP_DISTANCE = 90;
+
+    private ObstacleGrid grid = ObstacleGrid.EMPTY;
+    private final PlayerHandler.Player predicted = new PlayerHandler.Player(-1, 0, 0, false);
+    private boolean hasPosition = false;
+
+    // ring buffer ของ input ที่ยังไม่ถูก ack (seq, buttons)
+    private final int[] pendingSeq = new int[MAX_PENDING_INPUTS];
+    private final int[] pendingButtons = new int[MAX_PENDING_INPUTS];
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+
+    // ส่วนต่างระหว่างตำแหน่งที่วาดกับตำแหน่งที่ทำนาย (ค่อยๆ ลดลงสู่ 0)
+    private double offsetX = 0;
+    private double offsetY = 0;
+    private long lastDecayNanos = System.nanoTime();
+
+    /**
+     * ตั้งผังสำหรับทำนาย: ขนาดแผนที่ (MSG_WORLD) และสิ่งกีดขวางใน chunk ที่โหลดอยู่ (MSG_CHUNK / MSG_CHUNK_DROP)
+     * server ส่ง chunk รอบจอล่วงหน้าไว้แล้ว ตัวเราจึงไม่ไปถึง chunk ที่ยังไม่ได้โหลด
+     * grid จึงควรมีช่องเฉพาะช่วงของ chunk ที่โหลด ไม่ใช่ทั้งแผนที่ (ดู ObstacleGrid แบบมี origin)
+     */
+    public synchronized void setWorld(ObstacleGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * ใช้ input ที่เพิ่งส่งไปกับตำแหน่งที่ทำนายไว้ทันที
+     */
+    public synchronized void applyLocal(int seq, int buttons) {
+        if (!hasPosition) return;
+        if (pendingCount == MAX_PENDING_INPUTS) {
+            pendingHead = (pendingHead + 1) % MAX_PENDING_INPUTS;
+            pendingCount--;
+        }
+        int tail = (pendingHead + pendingCount) % MAX_PENDING_INPUTS;
+        pendingSeq[tail] = seq;
+        pendingButtons[tail] = buttons;
+        pendingCount++;
+        Movement.applyInput(predicted, buttons, grid);
+    }
+
+    /**
+     * รับตำแหน่งจริงจาก snapshot แล้วทำนายใหม่จากตำแหน่งนั้น
+     * @param ackSeq seq ของ input ล่าสุดที่ server ใช้แล้ว
+     */
+    public synchronized void reconcile(int serverX, int serverY, int ackSeq) {
+        if (!hasPosition) {
+            predicted.x = serverX;
+            predicted.y = serverY;
+            hasPosition = true;
+            return;
+        }
+        decay();
+        double shownX = predicted.x + offsetX;
+        double shownY = predicted.y + offsetY;
+
+        // ทิ้ง input ที่ server ใช้ไปแล้ว
+        while (pendingCount > 0 && pendingSeq[pendingHead] <= ackSeq) {
+            pendingHead = (pendingHead + 1) % MAX_PENDING_INPUTS;
+            pendingCount--;
+        }
+
+        // เริ่มจากตำแหน่งจริงแล้วเล่น input ที่เหลือซ้ำ
+        predicted.x = serverX;
+        predicted.y = serverY;
+        for (int i = 0; i < pendingCount; i++) {
+            Movement.applyInput(predicted, pendingButtons[(pendingHead + i) % MAX_PENDING_INPUTS], grid);
+        }
+
+        offsetX = shownX - predicted.x;
+        offsetY = shownY - predicted.y;
+        if (Math.abs(offsetX) > SNAP_DISTANCE || Math.abs(offsetY) > SNAP_DISTANCE) {
+            offsetX = 0;
+            offsetY = 0;
+        }
+    }
+
+    public synchronized boolean hasPosition() {
+        return hasPosition;
+    }
+
+    /**
+     * ตำแหน่งที่ควรวาด (ตำแหน่งที่ทำนาย + offset ที่เหลืออยู่)
+     */
+    public synchronized int displayX() {
+        decay();
+        return (int) Math.round(predicted.x + offsetX);
+    }
+
+    public synchronized int displayY() {
+        decay();
+        return (int) Math.round(predicted.y + offsetY);
+    }
+
+    // ต้องถือ lock
+    private void decay() {
+        long now = System.nanoTime();
+        double factor = Math.exp(-(now - lastDecayNanos) / 1_000_000.0 / SMOOTHING_MS);
+        lastDecayNanos = now;
+        offsetX *= factor;
+        offsetY *= factor;
+    }
+}
\ No newline at end of file
@@ -7,18 +7,19 @@ public class GameLauncher extends JFrame {
 
     private JTextField ipField;
     private JTextField portField;
+    private JTextField roomField;
     private JButton hostButton;
     private JButton joinButton;
 
     public GameLauncher() {
         setTitle("Tag Game - Launcher");
-        setSize(350, 200);
+        setSize(350, 230);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         setLayout(new BorderLayout(10, 10));
 
         // --- Panel สำหรับใส่ IP และ Port ---
-        JPanel inputPanel = new JPanel(new GridLayout(2, 2, 5, 5));
+        JPanel inputPanel = new JPanel(new GridLayout(3, 2, 5, 5));
         inputPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         inputPanel.add(new JLabel("Server IP:"));
@@ -29,6 +30,11 @@ public class GameLauncher extends JFrame {
         portField = new JTextField("8080");
         inputPanel.add(portField);
 
+        // (เว้นว่าง = ให้ server หาห้องที่ยังว่างให้)
+        inputPanel.add(new JLabel("Room:"));
+        roomField = new JTextField("");
+        inputPanel.add(roomField);
+
         add(inputPanel, BorderLayout.CENTER);
 
         // --- Panel สำหรับปุ่ม ---
@@ -58,7 +64,7 @@ public class GameLauncher extends JFrame {
             // 2. ★★★ เพิ่มบรรทัดนี้ ★★★
             // เริ่ม ClientGame (localhost) สำหรับคนที่เป็น Host
             // บรรทัดนี้โยน IOException ได้ ซึ่งจะทำให้ catch บล็อกถูกต้อง
-            new ClientGame("localhost", port);
+            new ClientGame("localhost", port, roomField.getText().trim());
 
             // 3. ปิดหน้าจอ Launcher
             dispose();
@@ -106,7 +112,7 @@ public class GameLauncher extends JFrame {
             int port = Integer.parseInt(portField.getText());
 
             // 1. เริ่ม ClientGame โดยเชื่อมต่อไปยัง IP และ Port ที่กรอก
-            new ClientGame(ip, port); // <-- บรรทัดนี้โยน IOException ได้
+            new ClientGame(ip, port, roomField.getText().trim()); // <-- บรรทัดนี้โยน IOException ได้
 
             // 2. ปิดหน้าจอ Launcher นี้
             dispose();
@@ -0,0 +1,134 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * area of interest: เลือกว่า snapshot ของ client แต่ละรายจะมีผู้เล่นคนไหนบ้าง
+ *
+ * client ได้เฉพาะผู้เล่นที่อยู่ห่างจากตัวเองไม่เกิน -Dtag.interestRadius (px) บวกตัวเองและ tagger เสมอ
+ * คนที่เห็นอยู่แล้วจะหายไปก็ต่อเมื่อห่างเกิน radius + margin (hysteresis) จึงไม่กระพริบตรงขอบวง
+ * ขนาดของ snapshot ต่อ client จึงขึ้นกับจำนวนคนรอบตัว (k) แทนจำนวนคนทั้งห้อง (N)
+ *
+ * ปิดอยู่ถ้าไม่ได้ตั้ง radius (ทุก client ได้ทุกคนและใช้ snapshot ที่เข้ารหัสร่วมกันได้เหมือนเดิม)
+ * ใช้จาก game loop ของห้องเท่านั้น
+ */
+final class InterestManager {
+
+    public static int radius = Integer.getInteger("tag.interestRadius", 0);
+    // ระยะเผื่อก่อนเอาออก (ค่าเริ่มต้น = radius / 4)
+    public static int margin = Integer.getInteger("tag.interestMargin", -1);
+
+    private final long enterSquared;
+    private final long leaveSquared;
+    // ช่องกว้างเท่ารัศมีที่ไกลที่สุด คนที่อาจเห็นได้จึงอยู่ใน 3x3 ช่องรอบตัวเสมอ
+    private final PlayerSpatialHash hash;
+
+    private List<PlayerHandler.Player> players = List.of();
+    private int taggerIndex = -1;
+    private int[] picked = new int[16];
+
+    private InterestManager(int radius, int margin) {
+        long leave = (long) radius + margin;
+        enterSquared = (long) radius * radius;
+        leaveSquared = leave * leave;
+        hash = new PlayerSpatialHash((int) Math.min(Integer.MAX_VALUE, leave));
+    }
+
+    /**
+     * @return null ถ้าปิด area of interest ไว้
+     */
+    static InterestManager create() {
+        if (radius <= 0) return null;
+        return new InterestManager(radius, margin < 0 ? radius / 4 : margin);
+    }
+
+    /**
+     * เตรียมผู้เล่นของ tick นี้ เรียกครั้งเดียวต่อ tick ก่อน viewFor()
+     * @param snapshot ผู้เล่นเรียงตาม id (ห้ามแก้ไขจนกว่าจะเรียก viewFor ครบทุก client)
+     */
+    void update(List<PlayerHandler.Player> snapshot) {
+        players = snapshot;
+        hash.index(snapshot);
+        taggerIndex = -1;
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.get(i).isTagger) {
+                taggerIndex = i;
+                break;
+            }
+        }
+    }
+
+    /**
+     * snapshot ของ gs ที่มีเฉพาะผู้เล่นที่ client นี้ควรเห็น (seq และสถานะเกมเหมือน gs)
+     * และอัปเดตรายชื่อที่เห็นอยู่ของ client (ใช้ทำ hysteresis ใน tick ถัดไป)
+     */
+    PlayerHandler.GameState viewFor(PlayerHandler.ClientSession ch, PlayerHandler.GameState gs) {
+        Set<Integer> visible = ch.interest;
+        int count = 0;
+        int self = indexOf(ch.playerId);
+        if (self >= 0) {
+            PlayerHandler.Player me = players.get(self);
+            int cx = hash.cellOf(me.x);
+            int cy = hash.cellOf(me.y);
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int j = hash.head(cx + dx, cy + dy); j >= 0; j = hash.next(j)) {
+                        PlayerHandler.Player other = players.get(j);
+                        long ox = other.x - me.x;
+                        long oy = other.y - me.y;
+                        long d2 = ox * ox + oy * oy;
+                        if (j == self || d2 <= enterSquared
+                                || (d2 <= leaveSquared && visible.contains(other.id))) {
+                            count = pick(count, j);
+                        }
+                    }
+                }
+            }
+        }
+        if (taggerIndex >= 0 && !contains(count, taggerIndex)) {
+            count = pick(count, taggerIndex);
+        }
+
+        // เรียงตาม index = เรียงตาม id (encodeSnapshot ต้องการรายการที่เรียงแล้ว)
+        Arrays.sort(picked, 0, count);
+        ArrayList<PlayerHandler.Player> list = new ArrayList<>(count);
+        visible.clear();
+        for (int i = 0; i < count; i++) {
+            PlayerHandler.Player p = players.get(picked[i]);
+            list.add(p);
+            visible.add(p.id);
+        }
+        PlayerHandler.GameState view = new PlayerHandler.GameState(
+                list, null, gs.remainingSeconds, gs.gameover, gs.winnerId, gs.gameStarted);
+        view.seq = gs.seq;
+        return view;
+    }
+
+    private int pick(int count, int index) {
+        if (count == picked.length) picked = Arrays.copyOf(picked, count * 2);
+        picked[count] = index;
+        return count + 1;
+    }
+
+    private boolean contains(int count, int index) {
+        for (int i = 0; i < count; i++) {
+            if (picked[i] == index) return true;
+        }
+        return false;
+    }
+
+    // players เรียงตาม id จึงค้นแบบ binary search ได้
+    private int indexOf(int id) {
+        int lo = 0;
+        int hi = players.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = players.get(mid).id;
+            if (midId < id) lo = mid + 1;
+            else if (midId > id) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * histogram ของระยะเวลา (nanos) แบบ bucket คงที่ ใช้กับ ServerMetrics
+ *
+ * record() แค่หา bucket แล้วเพิ่มตัวนับแบบ atomic ไม่จองหน่วยความจำและไม่ล็อก
+ * จึงเปิดไว้ใน production ได้ และเรียกจากหลาย thread พร้อมกันได้
+ * ขอบ bucket เป็นชุด 1-2-5 ตั้งแต่ 1 µs ถึง 5 s (ค่าที่เกินไปอยู่ใน bucket +Inf)
+ */
+public final class LatencyHistogram {
+
+    static final long[] BOUNDS_NANOS = {
+            1_000L, 2_000L, 5_000L,
+            10_000L, 20_000L, 50_000L,
+            100_000L, 200_000L, 500_000L,
+            1_000_000L, 2_000_000L, 5_000_000L,
+            10_000_000L, 20_000_000L, 50_000_000L,
+            100_000_000L, 200_000_000L, 500_000_000L,
+            1_000_000_000L, 2_000_000_000L, 5_000_000_000L
+    };
+
+    // index สุดท้าย = +Inf
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_NANOS.length + 1);
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        int i = 0;
+        while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) i++;
+        counts.incrementAndGet(i);
+        sumNanos.addAndGet(nanos);
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) total += counts.get(i);
+        return total;
+    }
+
+    public long sumNanos() {
+        return sumNanos.get();
+    }
+
+    /**
+     * ค่าประมาณของ percentile (ขอบบนของ bucket ที่ percentile นั้นตกอยู่) หน่วย nanos
+     * คืนค่า 0 ถ้ายังไม่มีข้อมูล
+     */
+    public long percentileNanos(double p) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return BOUNDS_NANOS[i];
+        }
+        return BOUNDS_NANOS[BOUNDS_NANOS.length - 1];
+    }
+
+    /**
+     * เขียน bucket/sum/count ในรูปแบบ text ของ Prometheus (หน่วยวินาที)
+     * @param labels label เพิ่มเติม เช่น lock="sessions" หรือค่าว่าง
+     */
+    void writePrometheus(StringBuilder out, String name, String labels) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            cumulative += counts.get(i);
+            out.append(name).append("_bucket{").append(prefix).append("le=\"")
+                    .append(seconds(BOUNDS_NANOS[i])).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts.get(BOUNDS_NANOS.length);
+        out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(braces).append(' ').append(seconds(sumNanos.get())).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+}
\ No newline at end of file
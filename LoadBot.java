@@ -0,0 +1,404 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * load generator แบบไม่มีหน้าจอ เปิด bot N ตัวเชื่อมต่อไปยัง Server ที่รันอยู่แล้ว
+ *
+ * bot แต่ละตัวทำตามขั้นตอนเดียวกับ ClientGame ทุกอย่าง (handshake, OP_JOIN, OP_READY, ack snapshot)
+ * แล้วส่ง OP_INPUT ตามอัตราที่กำหนด เดินแบบสุ่ม (random) หรือวนสี่ทิศตามสคริปต์ (script)
+ * OP_READY ถูกส่งหลังจากทุกตัวเข้าห้องแล้ว ห้องจึงเต็มก่อนเกมเริ่ม (quick match ได้ห้องละ roomCapacity คน)
+ *
+ * สิ่งที่วัดต่อ bot หลังจากเกมของมันเริ่ม
+ *  - ระยะห่างระหว่าง snapshot ที่ได้รับ (ควรใกล้ 1000 / tickRate ms)
+ *  - latency ของ input: ตั้งแต่ส่ง OP_INPUT จนได้ snapshot ที่มี lastInputSeq ของ input นั้น
+ *    (snapshot ไม่มีเวลาของ server จึงวัดรอบเต็ม client -> server -> client แทนทางเดียว)
+ *  - จำนวนไบต์ที่ได้รับต่อวินาที
+ *
+ * ผลลัพธ์เป็น JSON บรรทัดเดียวทาง stdout (log อื่นไป stderr) เปรียบเทียบระหว่างรอบได้ง่าย
+ * เกมยาว 60 วินาที ระยะวัดจึงควรสั้นกว่านั้น
+ *
+ * -Dtag.udp=true ให้ bot รับ snapshot และส่ง input ทาง UDP เหมือน ClientGame
+ * (ใช้คู่กับ -Dtag.udpLossPercent / -Dtag.udpLatencyMs / -Dtag.udpJitterMs ของ UdpLink ทั้งสองฝั่ง
+ *  เพื่อวัดผลของเครือข่ายที่แย่บน localhost)
+ *
+ * วิธีใช้: java LoadBot [host] [port] [จำนวน bot] [วินาที] [input ต่อวินาที] [random|script] [ชื่อห้อง]
+ *   (ชื่อห้องว่าง = quick match)
+ */
+public class LoadBot {
+
+    private static final int INPUT_HISTORY = 256;
+    private static final boolean USE_UDP = Boolean.getBoolean("tag.udp");
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99, 0.999};
+    private static final String[] PERCENTILE_KEYS = {"p50", "p90", "p99", "p999"};
+
+    // 8 ทิศ (ใช้ตอนสุ่ม) และ 4 ทิศ (ใช้ตอนวนตามสคริปต์)
+    private static final int[] ALL_DIRECTIONS = {
+            WireProtocol.INPUT_UP, WireProtocol.INPUT_DOWN, WireProtocol.INPUT_LEFT, WireProtocol.INPUT_RIGHT,
+            WireProtocol.INPUT_UP | WireProtocol.INPUT_LEFT, WireProtocol.INPUT_UP | WireProtocol.INPUT_RIGHT,
+            WireProtocol.INPUT_DOWN | WireProtocol.INPUT_LEFT, WireProtocol.INPUT_DOWN | WireProtocol.INPUT_RIGHT
+    };
+    private static final int[] SCRIPT_DIRECTIONS = {
+            WireProtocol.INPUT_RIGHT, WireProtocol.INPUT_DOWN, WireProtocol.INPUT_LEFT, WireProtocol.INPUT_UP
+    };
+
+    public static void main(String[] args) throws Exception {
+        String host = (args.length > 0) ? args[0] : "localhost";
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : 8080;
+        int bots = (args.length > 2) ? Integer.parseInt(args[2]) : 64;
+        int seconds = (args.length > 3) ? Integer.parseInt(args[3]) : 30;
+        int inputRate = (args.length > 4) ? Integer.parseInt(args[4]) : 30;
+        boolean scripted = (args.length > 5) && args[5].equals("script");
+        String room = (args.length > 6) ? args[6] : "";
+
+        List<Bot> all = new ArrayList<>(bots);
+        for (int i = 0; i < bots; i++) {
+            Bot bot = new Bot(i, scripted, inputRate);
+            bot.connect(host, port, room);
+            all.add(bot);
+        }
+        System.err.println(bots + " bots joined, sending READY");
+        for (Bot bot : all) bot.sendReady();
+
+        ScheduledExecutorService driver = Executors.newSingleThreadScheduledExecutor();
+        driver.scheduleAtFixedRate(() -> {
+            for (Bot bot : all) bot.tickInput();
+        }, 0, 1_000_000L / inputRate, TimeUnit.MICROSECONDS);
+
+        // รอให้ทุกห้องเริ่มเกม (ไม่เกิน 10 วินาที) แล้วค่อยเริ่มนับเวลาวัด
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline && all.stream().anyMatch(b -> !b.started && !b.failed)) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(seconds * 1000L);
+
+        driver.shutdownNow();
+        for (Bot bot : all) bot.stop();
+        System.out.println(report(host, port, seconds, inputRate, scripted, room, all));
+        System.exit(0);
+    }
+
+    //------------------------report----------------------------//
+    private static String report(String host, int port, int seconds, int inputRate, boolean scripted,
+                                 String room, List<Bot> all) {
+        Samples gaps = new Samples();
+        Samples latency = new Samples();
+        Samples bytesPerSecond = new Samples();
+        long snapshots = 0;
+        long bytes = 0;
+        int started = 0;
+        int failed = 0;
+        for (Bot bot : all) {
+            gaps.addAll(bot.gaps);
+            latency.addAll(bot.latency);
+            snapshots += bot.snapshots;
+            if (bot.failed) failed++;
+            if (!bot.started) continue;
+            started++;
+            long received = bot.bytesAtStop - bot.bytesAtStart;
+            double elapsed = (bot.stopNanos - bot.startNanos) / 1e9;
+            bytes += received;
+            if (elapsed > 0) bytesPerSecond.add(Math.round(received / elapsed));
+        }
+
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"host\":\"").append(escape(host)).append("\",\"port\":").append(port)
+                .append(",\"bots\":").append(all.size())
+                .append(",\"seconds\":").append(seconds)
+                .append(",\"inputRate\":").append(inputRate)
+                .append(",\"pattern\":\"").append(scripted ? "script" : "random").append('"')
+                .append(",\"room\":\"").append(escape(room)).append('"')
+                .append(",\"udp\":").append(USE_UDP)
+                .append(",\"started\":").append(started)
+                .append(",\"failed\":").append(failed)
+                .append(",\"snapshots\":").append(snapshots)
+                .append(",\"bytesReceived\":").append(bytes);
+        json.append(",\"snapshotGapMs\":");
+        appendPercentiles(json, gaps, 1e6);
+        json.append(",\"inputLatencyMs\":");
+        appendPercentiles(json, latency, 1e6);
+        json.append(",\"bytesPerSecondPerBot\":");
+        appendPercentiles(json, bytesPerSecond, 1);
+        return json.append('}').toString();
+    }
+
+    // ชื่อห้อง/host มาจาก command line อาจมี " หรือ \ ที่ทำให้ JSON เสีย
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void appendPercentiles(StringBuilder json, Samples samples, double scale) {
+        long[] sorted = samples.sorted();
+        json.append("{\"count\":").append(sorted.length);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            json.append(",\"").append(PERCENTILE_KEYS[i]).append("\":")
+                    .append(format(percentile(sorted, PERCENTILES[i]) / scale));
+        }
+        json.append(",\"max\":").append(format((sorted.length == 0 ? 0 : sorted[sorted.length - 1]) / scale));
+        json.append('}');
+    }
+
+    private static String format(double v) {
+        return String.format(Locale.ROOT, "%.3f", v);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+
+    /**
+     * รายการค่า long ที่ขยายได้ (เขียนจาก thread เดียว อ่านหลังจาก thread นั้นหยุดแล้ว)
+     */
+    private static final class Samples {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        void add(long v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) add(other.values[i]);
+        }
+
+        long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    //------------------------bot----------------------------//
+    private static final class Bot {
+        private final int index;
+        private final boolean scripted;
+        private final int inputRate;
+        private final Random rand;
+
+        private Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+        private final AtomicLong bytesRead = new AtomicLong();
+        private Thread reader;
+        private volatile UdpClient udp;
+
+        private final PlayerHandler.GameState[] history = new PlayerHandler.GameState[WireProtocol.SNAPSHOT_HISTORY];
+        // เวลาที่ส่ง input แต่ละ seq (index = seq % INPUT_HISTORY)
+        private final AtomicLongArray sentAt = new AtomicLongArray(INPUT_HISTORY);
+        private int myId;
+        private int seq = 0;
+        private int buttons = 0;
+        private int holdTicks = 0;
+        private int lastAck = 0;
+        private int latestSeq = 0;
+
+        private volatile boolean started = false;
+        private volatile boolean over = false;
+        private volatile boolean measuring = true;
+        private volatile boolean failed = false;
+
+        // ใช้ภายใต้ lock ของ bot (snapshot มาได้ทั้งจาก reader thread และ thread ของ UdpClient)
+        private final Samples gaps = new Samples();
+        private final Samples latency = new Samples();
+        private long lastArrival = 0;
+        private long snapshots = 0;
+        private long startNanos;
+        private long bytesAtStart;
+        private long stopNanos;
+        private long bytesAtStop;
+
+        Bot(int index, boolean scripted, int inputRate) {
+            this.index = index;
+            this.scripted = scripted;
+            this.inputRate = inputRate;
+            this.rand = new Random(index);
+        }
+
+        void connect(String host, int port, String room) throws IOException, InterruptedException {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    socket = new Socket(host, port);
+                    break;
+                } catch (ConnectException e) {
+                    // backlog ของ ServerSocket เต็มชั่วคราว
+                    if (attempt >= 100) throw e;
+                    Thread.sleep(100);
+                }
+            }
+            socket.setTcpNoDelay(true);
+            InputStream counted = new FilterInputStream(socket.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) bytesRead.incrementAndGet();
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) bytesRead.addAndGet(n);
+                    return n;
+                }
+            };
+            in = new DataInputStream(new BufferedInputStream(counted));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            myId = WireProtocol.readHandshake(in);
+            int udpPort = 0;
+            int token = 0;
+            if (USE_UDP) {
+                send(WireProtocol.OP_UDP, new byte[0]);
+                ByteBuffer offer = WireProtocol.readFrame(in);
+                if (offer.get() != WireProtocol.MSG_UDP) throw new IOException("bot " + index + " got no UDP reply");
+                udpPort = offer.getShort() & 0xFFFF;
+                token = offer.getInt();
+            }
+            send(WireProtocol.OP_JOIN, WireProtocol.encodeJoin(room));
+            ByteBuffer reply = WireProtocol.readFrame(in);
+            if (reply.get() != WireProtocol.MSG_ROOM || reply.get() != WireProtocol.ROOM_OK) {
+                throw new IOException("bot " + index + " was not admitted to a room");
+            }
+            reader = Thread.ofVirtual().name("loadbot-" + index).start(this::readLoop);
+            if (udpPort != 0) {
+                udp = new UdpClient(host, udpPort, myId, token, data -> {
+                    try {
+                        onFrame(data, System.nanoTime());
+                    } catch (IOException e) {
+                        failed = true;
+                    }
+                });
+            }
+        }
+
+        void sendReady() throws IOException {
+            send(WireProtocol.OP_READY, new byte[0]);
+        }
+
+        private synchronized void send(byte type, byte[] payload) throws IOException {
+            WireProtocol.writeFrame(out, type, payload);
+            out.flush();
+        }
+
+        // เรียกจาก driver thread ตามอัตรา inputRate
+        void tickInput() {
+            if (!started || over || failed) return;
+            if (scripted) {
+                // วนขวา ลง ซ้าย ขึ้น ทิศละหนึ่งวินาที (เหลื่อมกันตาม index)
+                buttons = SCRIPT_DIRECTIONS[(seq / inputRate + index) % SCRIPT_DIRECTIONS.length];
+            } else if (--holdTicks <= 0) {
+                // เปลี่ยนทิศทุก 0.5-2 วินาที
+                buttons = ALL_DIRECTIONS[rand.nextInt(ALL_DIRECTIONS.length)];
+                holdTicks = inputRate / 2 + rand.nextInt(inputRate * 3 / 2 + 1);
+            }
+            int next = seq + 1;
+            sentAt.set(next % INPUT_HISTORY, System.nanoTime());
+            try {
+                UdpClient u = udp;
+                if (u != null && u.isEstablished()) {
+                    u.sendInput(next, buttons);
+                } else {
+                    send(WireProtocol.OP_INPUT, WireProtocol.encodeInput(next, buttons));
+                }
+                seq = next;
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+
+        private void readLoop() {
+            try {
+                while (true) {
+                    ByteBuffer data = WireProtocol.readFrame(in);
+                    long now = System.nanoTime();
+                    if (data.get() != WireProtocol.MSG_SNAPSHOT) continue;
+                    onFrame(data, now);
+                }
+            } catch (IOException e) {
+                if (measuring) failed = true;
+            }
+        }
+
+        // snapshot ที่ seq ไม่ใหม่กว่าอันล่าสุด (UDP มาสลับลำดับ / ซ้ำกับทาง TCP) ถูกทิ้ง
+        private synchronized void onFrame(ByteBuffer data, long now) throws IOException {
+            if (data.getInt(data.position()) <= latestSeq) return;
+            PlayerHandler.GameState gs = WireProtocol.decodeSnapshot(data, this::historyAt);
+            if (gs == null) return;
+            latestSeq = gs.seq;
+            history[gs.seq % history.length] = gs;
+            UdpClient u = udp;
+            if (u != null && u.isEstablished()) {
+                u.sendAck(gs.seq);
+            } else {
+                send(WireProtocol.OP_ACK, WireProtocol.encodeAck(gs.seq));
+            }
+            if (gs.gameStarted) onSnapshot(gs, now);
+            if (gs.gameover) over = true;
+        }
+
+        private long bytesReceived() {
+            UdpClient u = udp;
+            return bytesRead.get() + (u == null ? 0 : u.receivedBytes());
+        }
+
+        private void onSnapshot(PlayerHandler.GameState gs, long now) {
+            if (!started) {
+                startNanos = now;
+                bytesAtStart = bytesReceived();
+                started = true;
+            }
+            if (!measuring) return;
+            snapshots++;
+            if (lastArrival != 0) gaps.add(now - lastArrival);
+            lastArrival = now;
+            for (PlayerHandler.Player p : gs.player) {
+                if (p.id != myId) continue;
+                // input ทุกตัวที่เพิ่งถูกใช้ (ถ้าค้างเกิน INPUT_HISTORY ถือว่าเวลาถูกเขียนทับแล้ว)
+                int from = Math.max(lastAck + 1, p.lastInputSeq - INPUT_HISTORY + 1);
+                for (int s = from; s <= p.lastInputSeq; s++) {
+                    latency.add(now - sentAt.get(s % INPUT_HISTORY));
+                }
+                lastAck = Math.max(lastAck, p.lastInputSeq);
+            }
+        }
+
+        private PlayerHandler.GameState historyAt(int seq) {
+            PlayerHandler.GameState gs = history[seq % history.length];
+            return (gs != null && gs.seq == seq) ? gs : null;
+        }
+
+        void stop() throws InterruptedException {
+            measuring = false;
+            synchronized (this) {
+                stopNanos = System.nanoTime();
+                bytesAtStop = bytesReceived();
+            }
+            UdpClient u = udp;
+            if (u != null) u.close();
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            reader.join(1000);
+        }
+    }
+}
\ No newline at end of file
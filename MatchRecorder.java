@@ -0,0 +1,186 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * บันทึกแมตช์ของห้องหนึ่งห้องลงไฟล์แบบต่อท้ายอย่างเดียว (append-only) เพื่อเล่นซ้ำด้วย MatchReplay
+ *
+ * เปิดด้วย -Dtag.recordDir=<โฟลเดอร์> แต่ละห้องได้ไฟล์ <ห้อง>-<เวลา>.tagrec ของตัวเอง
+ * (ชื่อห้องมาจาก client จึงเหลือแค่ [A-Za-z0-9_-] ในชื่อไฟล์ อักษรอื่นกลายเป็น _)
+ * บันทึก seed ผังสิ่งกีดขวาง และทุกเหตุการณ์ที่ game loop ดึงจากคิวจริงพร้อมเลข tick
+ * (เข้า/ออกห้อง, READY, input frame) ซึ่งเป็นสิ่งเดียวที่มาจากนอก simulation
+ * ไม่ได้บันทึกตำแหน่งผู้เล่น มีแค่ checksum ของสถานะทุกๆ หนึ่งวินาทีไว้ตรวจว่าเล่นซ้ำได้ผลตรงกัน
+ *
+ * เขียนลง MappedByteBuffer ทีละ REGION_BYTES การบันทึกหนึ่งเหตุการณ์จึงเป็นแค่การเขียน memory
+ * (ไม่มี system call ใน tick ยกเว้นตอน map ส่วนถัดไปของไฟล์) OS เป็นคนทยอยเขียนลงดิสก์ให้
+ * ส่วนที่ map ไว้แต่ยังไม่ได้เขียนเป็นศูนย์ ซึ่งผู้อ่านถือว่าจบไฟล์ ไฟล์จึงอ่านได้แม้ server ตายกลางแมตช์
+ *
+ * รูปแบบไฟล์ (big-endian):
+ *   header : [i32 MAGIC][u16 FORMAT_VERSION][i64 seed][i32 mapWidth][i32 mapHeight][u16 tickRate]
+ *            [i32 จำนวนสิ่งกีดขวาง] ตามด้วย [i32 x][i32 y][u16 w][u16 h][u8 type] ต่อชิ้น
+ *   record : [u8 ชนิด] ตามด้วยข้อมูลของชนิดนั้น
+ *     REC_TICK     [i32 tick]   เหตุการณ์ที่ตามมาเกิดใน tick นี้ (tick ที่ไม่มีเหตุการณ์ไม่ถูกเขียน)
+ *     REC_JOIN     [i32 id]
+ *     REC_LEAVE    [i32 id]
+ *     REC_READY    [i32 id]
+ *     REC_INPUT    [i32 id][i32 seq][u8 buttons]
+ *     REC_CHECKSUM [i64 hash]   ของสถานะหลังจบ tick ปัจจุบัน (Room.stateHash)
+ *     REC_END      [i32 tick]   ห้องปิดหลัง tick นี้
+ *     0 = ยังไม่ได้เขียน (จบไฟล์)
+ *
+ * ใช้จาก game loop ของห้องเท่านั้น ยกเว้น close() ที่อาจถูกเรียกจาก thread อื่นตอนปิดห้อง จึง synchronized ทุกเมธอด
+ */
+final class MatchRecorder {
+
+    public static String recordDir = System.getProperty("tag.recordDir");
+
+    static final int MAGIC = 0x54414752; // "TAGR"
+    static final int FORMAT_VERSION = 1;
+
+    static final byte REC_TICK = 1;
+    static final byte REC_JOIN = 2;
+    static final byte REC_LEAVE = 3;
+    static final byte REC_READY = 4;
+    static final byte REC_INPUT = 5;
+    static final byte REC_CHECKSUM = 6;
+    static final byte REC_END = 7;
+
+    // record ที่ยาวที่สุด (REC_TICK + REC_INPUT) ต้องพอดีกับที่เหลือใน region เสมอ
+    private static final int MAX_RECORD_BYTES = 5 + 10;
+    private static final int REGION_BYTES = 1 << 20;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int currentTick = -1;
+    private boolean closed = false;
+
+    private MatchRecorder(File file, int headerBytes) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        // header อาจยาวกว่า region ปกติ (แผนที่ใหญ่มาก)
+        region = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(REGION_BYTES, headerBytes + MAX_RECORD_BYTES));
+        regionStart = 0;
+    }
+
+    /**
+     * เปิดไฟล์บันทึกของห้องใหม่และเขียน header
+     * @return null ถ้าไม่ได้เปิดการบันทึกไว้ หรือสร้างไฟล์ไม่ได้ (ห้องยังเล่นได้ตามปกติ แค่ไม่มีบันทึก)
+     */
+    static MatchRecorder open(String roomName, long seed, int mapWidth, int mapHeight, List<Obstacle> obstacles) {
+        if (recordDir == null) return null;
+        File dir = new File(recordDir);
+        File file = new File(dir, fileSafe(roomName) + "-" + System.currentTimeMillis() + ".tagrec");
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+            if (!dir.getCanonicalFile().equals(file.getCanonicalFile().getParentFile())) {
+                throw new IOException("outside " + dir);
+            }
+            MatchRecorder recorder = new MatchRecorder(file, 28 + obstacles.size() * 13);
+            recorder.writeHeader(seed, mapWidth, mapHeight, obstacles);
+            System.out.println("[" + roomName + "] Recording match to " + file);
+            return recorder;
+        } catch (IOException e) {
+            System.out.println("[" + roomName + "] Cannot record match to " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ชื่อห้องที่ใช้เป็นส่วนหนึ่งของชื่อไฟล์ได้ (ไม่มี / หรือ .. ที่พาออกนอก recordDir)
+    static String fileSafe(String roomName) {
+        StringBuilder out = new StringBuilder(roomName.length());
+        for (int i = 0; i < roomName.length(); i++) {
+            char c = roomName.charAt(i);
+            boolean safe = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+            out.append(safe ? c : '_');
+        }
+        return out.length() == 0 ? "room" : out.toString();
+    }
+
+    private void writeHeader(long seed, int mapWidth, int mapHeight, List<Obstacle> obstacles) {
+        region.putInt(MAGIC);
+        region.putShort((short) FORMAT_VERSION);
+        region.putLong(seed);
+        region.putInt(mapWidth);
+        region.putInt(mapHeight);
+        region.putShort((short) Server.tickRate);
+        region.putInt(obstacles.size());
+        for (Obstacle o : obstacles) {
+            region.putInt(o.x);
+            region.putInt(o.y);
+            region.putShort((short) o.width);
+            region.putShort((short) o.height);
+            region.put((byte) o.type);
+        }
+    }
+
+    synchronized void join(int tick, int playerId) {
+        if (begin(tick)) region.put(REC_JOIN).putInt(playerId);
+    }
+
+    synchronized void leave(int tick, int playerId) {
+        if (begin(tick)) region.put(REC_LEAVE).putInt(playerId);
+    }
+
+    synchronized void ready(int tick, int playerId) {
+        if (begin(tick)) region.put(REC_READY).putInt(playerId);
+    }
+
+    synchronized void input(int tick, int playerId, int seq, int buttons) {
+        if (begin(tick)) region.put(REC_INPUT).putInt(playerId).putInt(seq).put((byte) buttons);
+    }
+
+    synchronized void checksum(int tick, long hash) {
+        if (begin(tick)) region.put(REC_CHECKSUM).putLong(hash);
+    }
+
+    /**
+     * เขียน REC_END แล้วปิดไฟล์ (ตัดส่วนที่ map ไว้แต่ไม่ได้ใช้ทิ้งถ้าทำได้)
+     */
+    synchronized void close(int lastTick) {
+        if (closed) return;
+        if (begin(lastTick)) region.put(REC_END).putInt(lastTick);
+        closed = true;
+        long length = regionStart + region.position();
+        try {
+            region.force();
+            channel.truncate(length);
+        } catch (IOException | RuntimeException e) {
+            // บาง OS ตัดไฟล์ที่ยัง map อยู่ไม่ได้ ส่วนท้ายที่เป็นศูนย์ไม่มีผลกับผู้อ่าน
+        }
+        try {
+            raf.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // เตรียมที่ว่างสำหรับหนึ่ง record และเขียน REC_TICK ถ้าเป็นเหตุการณ์แรกของ tick นี้
+    private boolean begin(int tick) {
+        if (closed) return false;
+        if (region.remaining() < MAX_RECORD_BYTES && !nextRegion()) return false;
+        if (tick != currentTick) {
+            region.put(REC_TICK).putInt(tick);
+            currentTick = tick;
+        }
+        return true;
+    }
+
+    private boolean nextRegion() {
+        try {
+            long start = regionStart + region.position();
+            region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_BYTES);
+            regionStart = start;
+            return true;
+        } catch (IOException e) {
+            System.out.println("Match recording to " + file + " stopped: " + e.getMessage());
+            closed = true;
+            return false;
+        }
+    }
+}
\ No newline at end of file
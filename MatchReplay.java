@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * เล่นแมตช์ที่ MatchRecorder บันทึกไว้ซ้ำแบบ headless (ไม่มี network ไม่มี scheduler)
+ *
+ * สร้าง Room จาก seed และผังสิ่งกีดขวางในไฟล์ แล้วใส่เหตุการณ์ของแต่ละ tick ลงคิวเดียวกับที่ transport ใช้
+ * ก่อนเรียก tick() ทีละ tick ให้เร็วที่สุดเท่าที่ทำได้ (ไม่รอตามนาฬิกา) tick ที่ไม่มีเหตุการณ์ก็ต้องรันด้วย
+ * เพราะนาฬิกาของแมตช์เดินตาม tick
+ * ทุก REC_CHECKSUM ถูกเทียบกับ Room.stateHash() ของการจำลอง ถ้าไม่ตรงจะบอก tick แรกที่ผลต่างกัน
+ *
+ * วิธีใช้: java MatchReplay <ไฟล์ .tagrec> [tick ที่ต้องการดูสถานะผู้เล่น...]
+ * exit code 1 ถ้าผลการจำลองไม่ตรงกับที่บันทึกไว้
+ */
+public class MatchReplay {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java MatchReplay <file.tagrec> [tick...]");
+            return;
+        }
+        List<Integer> inspect = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) inspect.add(Integer.parseInt(args[i]));
+
+        ByteBuffer log;
+        try (FileChannel channel = FileChannel.open(Path.of(args[0]), StandardOpenOption.READ)) {
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (log.getInt() != MatchRecorder.MAGIC) throw new IOException(args[0] + " is not a match recording");
+        int version = log.getShort() & 0xFFFF;
+        if (version != MatchRecorder.FORMAT_VERSION) {
+            throw new IOException("Unsupported recording version " + version + " (expected " + MatchRecorder.FORMAT_VERSION + ")");
+        }
+        long seed = log.getLong();
+        Server.mapWidth = log.getInt();
+        Server.mapHeight = log.getInt();
+        Server.tickRate = log.getShort() & 0xFFFF;
+        int count = log.getInt();
+        List<Obstacle> layout = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int x = log.getInt();
+            int y = log.getInt();
+            int width = log.getShort() & 0xFFFF;
+            int height = log.getShort() & 0xFFFF;
+            layout.add(new Obstacle(x, y, width, height, log.get()));
+        }
+        System.out.println("Replaying " + args[0] + ": seed " + seed + ", " + Server.mapWidth + "x" + Server.mapHeight
+                + " map, " + count + " obstacles, " + Server.tickRate + " ticks/s");
+
+        Room room = new Room("replay", seed, layout);
+        long events = 0;
+        long checksums = 0;
+        int divergedAt = -1;
+        int endTick = -1;
+        int lastTick = 0;
+        long start = System.nanoTime();
+        while (log.hasRemaining()) {
+            byte type = log.get();
+            if (type == 0) break;
+            switch (type) {
+                case MatchRecorder.REC_TICK -> {
+                    // ทุกเหตุการณ์ของ tick ก่อนหน้าอยู่ในคิวแล้ว เดินจนถึง tick ก่อน tick นี้ แล้วเริ่มใส่เหตุการณ์ชุดใหม่
+                    lastTick = log.getInt();
+                    advance(room, lastTick - 1, inspect);
+                }
+                case MatchRecorder.REC_JOIN -> room.queueJoin(log.getInt());
+                case MatchRecorder.REC_LEAVE -> room.queueLeave(log.getInt());
+                case MatchRecorder.REC_READY -> room.queueReady(log.getInt());
+                case MatchRecorder.REC_INPUT -> room.queueInput(log.getInt(), log.getInt(), log.get() & 0xFF);
+                case MatchRecorder.REC_CHECKSUM -> {
+                    // checksum เป็นของสถานะหลังจบ tick ปัจจุบัน จึงต้องรัน tick นี้ก่อนเทียบ
+                    long expected = log.getLong();
+                    advance(room, room.ticks() + 1, inspect);
+                    checksums++;
+                    if (divergedAt < 0 && room.stateHash() != expected) {
+                        divergedAt = room.ticks();
+                        System.out.println("DIVERGED at tick " + divergedAt + ": expected checksum " + expected
+                                + ", replay has " + room.stateHash());
+                        printPlayers(room);
+                    }
+                    continue;
+                }
+                case MatchRecorder.REC_END -> endTick = log.getInt();
+                default -> throw new IOException("Corrupt recording: unknown record type " + type + " at byte " + (log.position() - 1));
+            }
+            if (type != MatchRecorder.REC_TICK) events++;
+        }
+        advance(room, Math.max(endTick, lastTick), inspect);
+        long nanos = System.nanoTime() - start;
+
+        double matchSeconds = (double) room.ticks() / Server.tickRate;
+        double replaySeconds = nanos / 1e9;
+        System.out.println();
+        System.out.printf("Replayed %d ticks (%.1f s of play) and %d events in %.1f ms (%.0fx real time)%n",
+                room.ticks(), matchSeconds, events, replaySeconds * 1000, matchSeconds / Math.max(replaySeconds, 1e-9));
+        System.out.println(endTick < 0 ? "Recording has no end marker (server stopped mid-match)" : "Room closed after tick " + endTick);
+        System.out.println("Winner: " + (room.isGameOver() ? (room.winner() == -1 ? "tie" : "player " + room.winner()) : "match not finished"));
+        printPlayers(room);
+        if (divergedAt >= 0) {
+            System.out.println("Replay DIVERGED from the recording at tick " + divergedAt);
+            System.exit(1);
+        }
+        System.out.println("All " + checksums + " checksums matched");
+    }
+
+    // รัน tick จนถึง tick ที่ต้องการ (ถ้ารันไปถึงแล้วไม่ทำอะไร)
+    private static void advance(Room room, int untilTick, List<Integer> inspect) {
+        while (room.ticks() < untilTick) {
+            room.tick();
+            if (inspect.contains(room.ticks())) {
+                System.out.println("-- tick " + room.ticks());
+                printPlayers(room);
+            }
+        }
+    }
+
+    private static void printPlayers(Room room) {
+        for (PlayerHandler.Player p : room.snapshot().player) {
+            System.out.println("  " + p + " lastInput " + p.lastInputSeq);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+/**
+ * กติกาการเดินของผู้เล่น ใช้ร่วมกันระหว่าง Room (server) และ ClientPrediction (client)
+ *
+ * ทั้งสองฝั่งต้องได้ผลลัพธ์เหมือนกันทุกบิตจาก input และผังสิ่งกีดขวางชุดเดียวกัน
+ * client จึงทำนายตำแหน่งตัวเองได้ตรงกับที่ server จะคำนวณ (ใช้เลขจำนวนเต็มล้วน)
+ */
+public final class Movement {
+
+    public static final int PLAYER_SPEED = 5;
+    // ระยะต่อแกนเมื่อเดินทแยง (5 / sqrt(2) ปัดเป็นจำนวนเต็ม) ให้ความเร็วใกล้เคียงการเดินตรง
+    public static final int DIAGONAL_STEP = (int) Math.round(PLAYER_SPEED / Math.sqrt(2));
+
+    private Movement() {}
+
+    /**
+     * ขยับผู้เล่นตาม bitmask ของปุ่ม (WireProtocol.INPUT_*) หนึ่ง tick
+     * @return true ถ้ามีการกดทิศทาง (แม้จะเดินไม่ได้เพราะชน)
+     */
+    public static boolean applyInput(PlayerHandler.Player player, int buttons, ObstacleGrid grid) {
+        int dx = directionX(buttons);
+        int dy = directionY(buttons);
+        if (dx == 0 && dy == 0) return false;
+
+        int step = step(dx, dy);
+        trySetPosition(player, player.x + dx * step, player.y + dy * step, grid);
+        return true;
+    }
+
+    /**
+     * applyInput บน PlayerStore ของห้อง (ผลเหมือนเวอร์ชัน Player ทุกบิต)
+     */
+    static boolean applyInput(PlayerStore store, int slot, int buttons, ObstacleGrid grid) {
+        int dx = directionX(buttons);
+        int dy = directionY(buttons);
+        if (dx == 0 && dy == 0) return false;
+
+        int step = step(dx, dy);
+        trySetPosition(store, slot, store.x[slot] + dx * step, store.y[slot] + dy * step, grid);
+        return true;
+    }
+
+    // ปุ่มตรงข้ามกันหักล้างกัน
+    private static int directionX(int buttons) {
+        int dx = 0;
+        if ((buttons & WireProtocol.INPUT_LEFT) != 0) dx--;
+        if ((buttons & WireProtocol.INPUT_RIGHT) != 0) dx++;
+        return dx;
+    }
+
+    private static int directionY(int buttons) {
+        int dy = 0;
+        if ((buttons & WireProtocol.INPUT_UP) != 0) dy--;
+        if ((buttons & WireProtocol.INPUT_DOWN) != 0) dy++;
+        return dy;
+    }
+
+    private static int step(int dx, int dy) {
+        return (dx != 0 && dy != 0) ? DIAGONAL_STEP : PLAYER_SPEED;
+    }
+
+    /**
+     * พยายามย้ายผู้เล่นไปยังพิกัดใหม่ (newX, newY)
+     * เมธอดนี้จะตรวจสอบขอบเขตแผนที่และสิ่งกีดขวางทั้งหมด
+     * ถ้าการย้ายนั้น hợp lệ (ไม่ชน) ก็จะอัปเดตตำแหน่งผู้เล่น
+     *
+     * @param player ผู้เล่นที่จะย้าย
+     * @param newX   พิกัด X เป้าหมาย
+     * @param newY   พิกัด Y เป้าหมาย
+     * @param grid   ผังสิ่งกีดขวางของห้อง (รวมขนาดแผนที่)
+     * @return true หากย้ายสำเร็จ, false หากถูกบล็อก (ชน)
+     */
+    public static boolean trySetPosition(PlayerHandler.Player player, int newX, int newY, ObstacleGrid grid) {
+
+        // 1. ตรวจสอบขอบเขตแผนที่ (Clamping)
+        int clampedX = clampX(newX, grid);
+        int clampedY = clampY(newY, grid);
+
+        // 2. ตรวจสอบการชนสิ่งกีดขวาง (AABB) ด้วยพิกัดที่ *clamped* แล้ว
+        // (ดูเฉพาะช่องของ ObstacleGrid ที่ผู้เล่นทับอยู่ ไม่ต้องล็อก obstacles)
+        boolean collision = grid.intersects(clampedX, clampedY, PlayerHandler.PLAYER_SIZE, PlayerHandler.PLAYER_SIZE);
+
+        // 3. ถ้าไม่ชน ถึงจะอัปเดตตำแหน่ง
+        if (!collision) {
+            player.x = clampedX;
+            player.y = clampedY;
+            return true; // ย้ายสำเร็จ
+        } else {
+            // ถ้าชนขอบเขต หรือ ชนสิ่งกีดขวาง
+            // เราอาจจะลองย้ายแค่แกน X หรือ Y (Slide)
+            // แต่เพื่อความง่าย เราจะ "ไม่อนุญาต" ให้ย้ายเลย
+            return false; // ย้ายไม่สำเร็จ (ถูกบล็อก)
+        }
+    }
+
+    /**
+     * trySetPosition บน PlayerStore ของห้อง (clamp และตรวจสิ่งกีดขวางแบบเดียวกัน)
+     */
+    static boolean trySetPosition(PlayerStore store, int slot, int newX, int newY, ObstacleGrid grid) {
+        int clampedX = clampX(newX, grid);
+        int clampedY = clampY(newY, grid);
+        if (grid.intersects(clampedX, clampedY, PlayerHandler.PLAYER_SIZE, PlayerHandler.PLAYER_SIZE)) return false;
+        store.x[slot] = clampedX;
+        store.y[slot] = clampedY;
+        return true;
+    }
+
+    private static int clampX(int x, ObstacleGrid grid) {
+        if (x < 0) x = 0;
+        if (x + PlayerHandler.PLAYER_SIZE > grid.mapWidth()) x = grid.mapWidth() - PlayerHandler.PLAYER_SIZE;
+        return x;
+    }
+
+    private static int clampY(int y, ObstacleGrid grid) {
+        if (y < 0) y = 0;
+        if (y + PlayerHandler.PLAYER_SIZE > grid.mapHeight()) y = grid.mapHeight() - PlayerHandler.PLAYER_SIZE;
+        return y;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * transport แบบ non-blocking ด้วย Selector/SocketChannel
+ *
+ * thread ที่เรียก serve() ทำหน้าที่ accept อย่างเดียว แล้วกระจาย channel
+ * ให้ I/O thread จำนวนน้อยๆ (ค่าเริ่มต้นไม่เกิน 4) แต่ละตัวมี Selector ของตัวเอง
+ * การอ่าน/เขียนใช้ direct buffer จาก BufferPool และรองรับการเขียนไม่ครบ (partial write)
+ * โดยค้างข้อมูลที่เหลือไว้จนกว่า channel จะพร้อมเขียน (OP_WRITE)
+ * frame ขาออกรอใน OutboundQueue และถูกเข้ารหัสลง buffer เมื่อข้อมูลก่อนหน้าถูกเขียนหมดแล้วเท่านั้น
+ * payload ขนาดตั้งแต่ SHARED_PAYLOAD_BYTES ขึ้นไปไม่ถูกคัดลอก: header ของ frame (ของแต่ละ client) อยู่ใน buffer ของ pool
+ * ตามด้วย view ของ direct buffer ที่ทุก client ใช้ร่วมกัน แล้วเขียนรวดเดียวด้วย gathering write
+ */
+public class NioTransport implements Transport {
+
+    public static final int DEFAULT_IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    static final int BUFFER_SIZE = 8 * 1024;
+    // payload ที่เล็กกว่านี้คัดลอกต่อท้าย header ใน buffer เดียวกันถูกกว่าการเพิ่ม buffer เข้า gathering write
+    static final int SHARED_PAYLOAD_BYTES = 512;
+    private static final int MAX_POOLED_BUFFERS = 4096;
+
+    private final int ioThreads;
+    private final BufferPool pool = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+
+    public NioTransport(int ioThreads) {
+        this.ioThreads = Math.max(1, ioThreads);
+    }
+
+    @Override
+    public void serve(int port) throws IOException {
+        Worker[] workers = new Worker[ioThreads];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(Selector.open());
+            Thread t = new Thread(workers[i], "nio-io-" + i);
+            t.setDaemon(true);
+            workers[i].thread = t;
+            t.start();
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            int next = 0;
+            while (true) {
+                SocketChannel channel = server.accept();
+                System.out.println("New client connected");
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Worker worker = workers[next];
+                next = (next + 1) % workers.length;
+                worker.register(new NioConnection(channel, worker));
+            }
+        }
+    }
+
+    //------------------------I/O thread----------------------------//
+    private final class Worker implements Runnable {
+        final Selector selector;
+        Thread thread;
+        final Queue<NioConnection> newConnections = new ConcurrentLinkedQueue<>();
+        final Queue<NioConnection> pending = new ConcurrentLinkedQueue<>();
+
+        Worker(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(NioConnection connection) {
+            newConnections.add(connection);
+            selector.wakeup();
+        }
+
+        /**
+         * ขอให้ I/O thread flush (หรือปิด) การเชื่อมต่อนี้ในรอบถัดไป
+         */
+        void schedule(NioConnection connection) {
+            pending.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+
+                    NioConnection c;
+                    while ((c = newConnections.poll()) != null) {
+                        try {
+                            c.key = c.channel.register(selector, SelectionKey.OP_READ, c);
+                            Server.onConnect(c);
+                        } catch (IOException e) {
+                            c.closeNow();
+                        }
+                    }
+                    while ((c = pending.poll()) != null) {
+                        c.onScheduled();
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        NioConnection conn = (NioConnection) key.attachment();
+                        if (key.isValid() && key.isReadable()) conn.onReadable();
+                        if (key.isValid() && key.isWritable()) conn.flush();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    //------------------------connection----------------------------//
+    private final class NioConnection implements ClientConnection {
+        final SocketChannel channel;
+        final Worker worker;
+        SelectionKey key;
+        private volatile int playerId = -1;
+
+        // ใช้เฉพาะใน I/O thread
+        private ByteBuffer readBuffer = pool.acquire();
+        private boolean closed = false;
+
+        // ส่วนขาออกที่เข้ารหัสแล้ว (ใช้เฉพาะใน I/O thread)
+        // ready = buffer ที่เต็มแล้วรอเขียน (read mode) ทั้งของ pool และ view ของ payload ที่ใช้ร่วมกัน
+        // shared = frame เจ้าของ view (อ่านอย่างเดียว) ใน ready ตามลำดับเดียวกัน ต้อง releaseDirect เมื่อเขียนหมด
+        // tail = buffer ของ pool ที่กำลังเติม (write mode)
+        private final ArrayDeque<ByteBuffer> ready = new ArrayDeque<>();
+        private final ArrayDeque<OutboundQueue.Frame> shared = new ArrayDeque<>();
+        private ByteBuffer tail;
+        // สำเนาของ ready ที่ส่งให้ gathering write (ใช้ array เดิมซ้ำ ขยายเมื่อ ready ยาวขึ้นเท่านั้น)
+        private ByteBuffer[] writeBatch = new ByteBuffer[16];
+        private final byte[] header = new byte[WireProtocol.MAX_FRAME_HEADER_BYTES];
+
+        // game loop ใส่ frame ที่นี่ แล้วขอให้ I/O thread flush
+        private final OutboundQueue outbound = new OutboundQueue();
+
+        // ป้องกันด้วย lock ของ object นี้
+        private boolean scheduled = false;
+        private boolean closeRequested = false;
+
+        NioConnection(SocketChannel channel, Worker worker) {
+            this.channel = channel;
+            this.worker = worker;
+        }
+
+        @Override
+        public void sendHandshake(int playerId) {
+            this.playerId = playerId;
+            byte[] handshake = ByteBuffer.allocate(5).put((byte) WireProtocol.VERSION).putInt(playerId).array();
+            // onConnect ถูกเรียกจาก I/O thread อยู่แล้ว จึงเขียนลง buffer และ flush ได้ทันที
+            append(handshake, handshake.length);
+            flush();
+        }
+
+        @Override
+        public void sendFrame(byte type, byte[] payload) {
+            send(new OutboundQueue.Frame(type, payload));
+        }
+
+        @Override
+        public void send(OutboundQueue.Frame frame) {
+            boolean lagging = !outbound.offer(frame);
+            if (lagging) {
+                System.out.println("Player " + playerId + " is too far behind, disconnecting");
+            }
+            boolean wake;
+            synchronized (this) {
+                if (closeRequested) return;
+                if (lagging) closeRequested = true;
+                wake = !scheduled;
+                scheduled = true;
+            }
+            if (wake) worker.schedule(this);
+        }
+
+        @Override
+        public OutboundQueue outbound() {
+            return outbound;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closeRequested) return;
+                closeRequested = true;
+                scheduled = true;
+            }
+            worker.schedule(this);
+        }
+
+        // เรียกจาก I/O thread เท่านั้น
+        private void append(byte[] src, int length) {
+            int off = 0;
+            while (off < length) {
+                if (tail == null || !tail.hasRemaining()) {
+                    if (tail != null) {
+                        tail.flip();
+                        ready.add(tail);
+                    }
+                    tail = pool.acquire();
+                }
+                int n = Math.min(tail.remaining(), length - off);
+                tail.put(src, off, n);
+                off += n;
+            }
+        }
+
+        /**
+         * เข้ารหัส frame ที่รออยู่ในคิวลง buffer ขาออก
+         * เรียกเมื่อ buffer เดิมถูกเขียนหมดแล้วเท่านั้น snapshot ที่ยังอยู่ในคิวจึงยังถูกแทนที่ด้วยอันใหม่ได้
+         */
+        private void fill() {
+            OutboundQueue.Frame frame;
+            while ((frame = outbound.poll()) != null) {
+                int headerLength = WireProtocol.encodeFrameHeader(header, frame.payload.length, frame.type);
+                append(header, headerLength);
+                if (frame.payload.length >= SHARED_PAYLOAD_BYTES) {
+                    sealTail();
+                    ready.add(frame.retainDirect());
+                    shared.add(frame);
+                } else {
+                    append(frame.payload, frame.payload.length);
+                }
+            }
+            sealTail();
+        }
+
+        // ย้าย tail ที่มีข้อมูลแล้วไปต่อท้าย ready (ข้อมูลที่เติมหลังจากนี้ต้องอยู่หลังมัน)
+        private void sealTail() {
+            if (tail != null && tail.position() > 0) {
+                tail.flip();
+                ready.add(tail);
+                tail = null;
+            }
+        }
+
+        void onScheduled() {
+            boolean close;
+            synchronized (this) {
+                scheduled = false;
+                close = closeRequested;
+            }
+            if (close) {
+                closeNow();
+            } else {
+                flush();
+            }
+        }
+
+        void onReadable() {
+            int n;
+            try {
+                n = channel.read(readBuffer);
+            } catch (IOException e) {
+                System.out.println("Player " + playerId + " disconnected: " + e.getMessage());
+                closeNow();
+                return;
+            }
+            if (n < 0) {
+                System.out.println("Player " + playerId + " disconnected");
+                closeNow();
+                return;
+            }
+
+            readBuffer.flip();
+            try {
+                while (readBuffer.remaining() >= 2) {
+                    int pos = readBuffer.position();
+                    int length = readBuffer.getShort(pos) & 0xFFFF;
+                    // frame จาก client สั้นเสมอ จึงไม่รับ header แบบขยาย
+                    if (length == 0 || length > BUFFER_SIZE - 2) {
+                        throw new IOException("Bad frame length " + length);
+                    }
+                    if (readBuffer.remaining() < 2 + length) break;
+                    ByteBuffer frame = readBuffer.slice(pos + 2, length);
+                    readBuffer.position(pos + 2 + length);
+                    Server.onFrame(playerId, frame);
+                }
+            } catch (Exception e) {
+                System.out.println("Player " + playerId + " protocol error: " + e.getMessage());
+                closeNow();
+                return;
+            }
+            readBuffer.compact();
+        }
+
+        /**
+         * เขียนข้อมูลที่ค้างอยู่เท่าที่ channel รับได้ (เรียกจาก I/O thread เท่านั้น)
+         */
+        void flush() {
+            if (closed) return;
+            boolean drained;
+            try {
+                while (true) {
+                    if (ready.isEmpty()) fill();
+                    if (ready.isEmpty()) {
+                        drained = true;
+                        break;
+                    }
+                    int n = ready.size();
+                    if (n > writeBatch.length) writeBatch = new ByteBuffer[Math.max(n, writeBatch.length * 2)];
+                    ready.toArray(writeBatch);
+                    channel.write(writeBatch, 0, n);
+                    Arrays.fill(writeBatch, 0, n, null);
+                    while (!ready.isEmpty() && !ready.peekFirst().hasRemaining()) {
+                        release(ready.pollFirst());
+                    }
+                    // socket buffer เต็ม รอ OP_WRITE
+                    if (!ready.isEmpty()) {
+                        drained = false;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Player " + playerId + " disconnected: " + e.getMessage());
+                closeNow();
+                return;
+            }
+            if (key != null && key.isValid()) {
+                key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void closeNow() {
+            if (closed) return;
+            closed = true;
+            if (key != null) key.cancel();
+            try { channel.close(); } catch (IOException ignored) {}
+            if (playerId >= 0) Server.onDisconnect(playerId);
+
+            pool.release(readBuffer);
+            readBuffer = null;
+            outbound.close();
+            synchronized (this) {
+                closeRequested = true;
+            }
+            for (ByteBuffer buf : ready) release(buf);
+            ready.clear();
+            pool.release(tail);
+            tail = null;
+        }
+
+        // buffer ใน ready ที่ไม่ใช้แล้ว: ของ pool คืน pool, view ที่ใช้ร่วมกันคืนให้ frame เจ้าของ
+        private void release(ByteBuffer buf) {
+            if (buf.isReadOnly()) {
+                shared.pollFirst().releaseDirect();
+            } else {
+                pool.release(buf);
+            }
+        }
+    }
+}
\ No newline at end of file
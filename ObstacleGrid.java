@@ -0,0 +1,137 @@
+import java.util.List;
+
+/**
+ * ดัชนีเชิงพื้นที่แบบตาราง (uniform grid) ของสิ่งกีดขวาง
+ *
+ * สร้างครั้งเดียวตอน spawnObstacles() และไม่ถูกแก้ไขอีก จึงอ่านได้จากหลาย thread โดยไม่ต้องล็อก
+ * การตรวจชนดูเฉพาะช่องที่ AABB ของผู้เล่นทับอยู่ แทนการไล่ดูสิ่งกีดขวางทุกชิ้น
+ *
+ * ข้อมูลเก็บแบบ CSR: cellStart[c]..cellStart[c+1] คือช่วงใน cellItems ของช่อง c
+ * (สิ่งกีดขวางที่คร่อมหลายช่องจะถูกใส่ในทุกช่องที่มันทับ)
+ *
+ * ตารางครอบคลุมได้แค่บางส่วนของแผนที่ (ช่วง originX/originY ขนาด areaWidth x areaHeight)
+ * เช่นเฉพาะ chunk ที่ client โหลดอยู่ พิกัดนอกช่วงถูกปัดเข้าช่องริมขอบ การตรวจชนจึงยังถูกต้องเสมอ
+ * แค่ช่องริมขอบอาจมีของมากขึ้น ขนาดแผนที่ (mapWidth/mapHeight) ยังเป็นของทั้งโลกสำหรับ Movement
+ */
+public final class ObstacleGrid {
+
+    public static final int DEFAULT_CELL_SIZE = 128;
+
+    // ยังไม่มีผัง: ไม่มีสิ่งกีดขวาง ขอบเขตเท่าแผนที่เริ่มต้น
+    public static final ObstacleGrid EMPTY = new ObstacleGrid(List.of(), Server.MAP_WIDTH, Server.MAP_HEIGHT, DEFAULT_CELL_SIZE);
+
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int cellSize;
+    private final int originX;
+    private final int originY;
+    private final int cols;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    private final int[] ox;
+    private final int[] oy;
+    private final int[] ow;
+    private final int[] oh;
+
+    public ObstacleGrid(List<Obstacle> obstacles, int mapWidth, int mapHeight, int cellSize) {
+        this(obstacles, mapWidth, mapHeight, 0, 0, mapWidth, mapHeight, cellSize);
+    }
+
+    /**
+     * ตารางที่มีช่องเฉพาะในช่วง (originX, originY, areaWidth, areaHeight) ของแผนที่ขนาด mapWidth x mapHeight
+     */
+    public ObstacleGrid(List<Obstacle> obstacles, int mapWidth, int mapHeight,
+                        int originX, int originY, int areaWidth, int areaHeight, int cellSize) {
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        this.cellSize = cellSize;
+        this.originX = originX;
+        this.originY = originY;
+        this.cols = Math.max(1, (areaWidth + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (areaHeight + cellSize - 1) / cellSize);
+
+        int n = obstacles.size();
+        ox = new int[n];
+        oy = new int[n];
+        ow = new int[n];
+        oh = new int[n];
+        for (int i = 0; i < n; i++) {
+            Obstacle o = obstacles.get(i);
+            ox[i] = o.x;
+            oy[i] = o.y;
+            ow[i] = o.width;
+            oh[i] = o.height;
+        }
+
+        // รอบแรกนับจำนวนต่อช่อง รอบสองใส่ index ลงตำแหน่ง
+        cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            for (int cy = cellY(oy[i]); cy <= cellY(oy[i] + oh[i] - 1); cy++) {
+                for (int cx = cellX(ox[i]); cx <= cellX(ox[i] + ow[i] - 1); cx++) {
+                    cellStart[cy * cols + cx + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellItems = new int[cellStart[cols * rows]];
+        int[] fill = new int[cols * rows];
+        for (int i = 0; i < n; i++) {
+            for (int cy = cellY(oy[i]); cy <= cellY(oy[i] + oh[i] - 1); cy++) {
+                for (int cx = cellX(ox[i]); cx <= cellX(ox[i] + ow[i] - 1); cx++) {
+                    int c = cy * cols + cx;
+                    cellItems[cellStart[c] + fill[c]++] = i;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return ox.length;
+    }
+
+    // ขอบเขตของแผนที่ (Movement ใช้กันผู้เล่นออกนอกแผนที่)
+    public int mapWidth() {
+        return mapWidth;
+    }
+
+    public int mapHeight() {
+        return mapHeight;
+    }
+
+    /**
+     * ตรวจว่าสี่เหลี่ยม (x, y, w, h) ทับกับสิ่งกีดขวางชิ้นใดหรือไม่
+     */
+    public boolean intersects(int x, int y, int w, int h) {
+        int cx0 = cellX(x);
+        int cx1 = cellX(x + w - 1);
+        int cy0 = cellY(y);
+        int cy1 = cellY(y + h - 1);
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                int c = cy * cols + cx;
+                for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                    int i = cellItems[k];
+                    if (x < ox[i] + ow[i] &&
+                            x + w > ox[i] &&
+                            y < oy[i] + oh[i] &&
+                            y + h > oy[i]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private int cellX(int x) {
+        return Math.max(0, Math.min(cols - 1, Math.floorDiv(x - originX, cellSize)));
+    }
+
+    private int cellY(int y) {
+        return Math.max(0, Math.min(rows - 1, Math.floorDiv(y - originY, cellSize)));
+    }
+}
\ No newline at end of file
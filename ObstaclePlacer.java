@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * สุ่มวางสิ่งกีดขวางแบบ dart throwing (Poisson-disk) ให้แต่ละชิ้นห่างกันอย่างน้อย minDistance
+ *
+ * ตำแหน่งที่สุ่มได้ตรวจกับชิ้นที่วางแล้วผ่านตารางช่องกว้าง = ด้านที่ยาวที่สุดของสิ่งกีดขวาง + minDistance
+ * ชิ้นที่อาจทับได้จึงมีมุมซ้ายบนอยู่ใน 3x3 ช่องรอบตัวเสมอ การลองหนึ่งครั้งจึงไม่ขึ้นกับจำนวนชิ้นที่วางไปแล้ว
+ *
+ * แต่ละชิ้นลองได้ไม่เกิน attemptsPerObstacle ครั้ง ถ้าวางไม่ได้ก็ข้ามไป และรวมทุกชิ้นลองได้ไม่เกิน totalAttempts ครั้ง
+ * แผนที่ที่แน่นเกินไปจึงจบในเวลาที่จำกัดเสมอ (ไม่วนไม่รู้จบ) แค่ได้น้อยกว่าที่ขอ
+ * ผลลัพธ์ขึ้นกับ seed, ขนาดแผนที่ และจำนวนที่ขอเท่านั้น seed เดียวกันจึงได้ผังเดียวกันทุกครั้ง
+ */
+final class ObstaclePlacer {
+
+    /**
+     * ผลของการวาง: placed อาจน้อยกว่า requested ถ้าความหนาแน่นที่ขอสูงเกินกว่าจะวางได้
+     */
+    static final class Result {
+        final List<Obstacle> obstacles;
+        final int requested;
+        final int attempts;
+
+        Result(List<Obstacle> obstacles, int requested, int attempts) {
+            this.obstacles = obstacles;
+            this.requested = requested;
+            this.attempts = attempts;
+        }
+
+        boolean complete() {
+            return obstacles.size() == requested;
+        }
+    }
+
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int minDistance;
+    private final int padding;
+    private final int[][] typeSizes;
+
+    private final int cellSize;
+    private final int cols;
+    private final int rows;
+    // รายการโยงของแต่ละช่อง: cellHead[c] = ชิ้นแรก, next[i] = ชิ้นถัดไปในช่องเดียวกัน (-1 = จบ)
+    private final int[] cellHead;
+    private int[] next = new int[64];
+    private List<Obstacle> placed;
+
+    /**
+     * @param typeSizes {width, height} ของสิ่งกีดขวางแต่ละ type
+     * @param padding   ระยะว่างจากขอบแผนที่
+     */
+    ObstaclePlacer(int mapWidth, int mapHeight, int minDistance, int padding, int[][] typeSizes) {
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        this.minDistance = minDistance;
+        this.padding = padding;
+        this.typeSizes = typeSizes;
+        int longest = 1;
+        for (int[] size : typeSizes) longest = Math.max(longest, Math.max(size[0], size[1]));
+        this.cellSize = longest + minDistance;
+        this.cols = Math.max(1, (mapWidth + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (mapHeight + cellSize - 1) / cellSize);
+        this.cellHead = new int[cols * rows];
+    }
+
+    Result place(long seed, int count, int attemptsPerObstacle, int totalAttempts) {
+        Random rand = new Random(seed);
+        placed = new ArrayList<>(count);
+        Arrays.fill(cellHead, -1);
+        int attempts = 0;
+        for (int i = 0; i < count && attempts < totalAttempts; i++) {
+            int type = rand.nextInt(typeSizes.length);
+            int width = typeSizes[type][0];
+            int height = typeSizes[type][1];
+            int rangeX = Math.max(1, mapWidth - width - 2 * padding);
+            int rangeY = Math.max(1, mapHeight - height - 2 * padding);
+            for (int attempt = 0; attempt < attemptsPerObstacle && attempts < totalAttempts; attempt++) {
+                attempts++;
+                int x = rand.nextInt(rangeX) + padding;
+                int y = rand.nextInt(rangeY) + padding;
+                if (!overlaps(x, y, width, height)) {
+                    add(new Obstacle(x, y, width, height, type));
+                    break;
+                }
+            }
+        }
+        List<Obstacle> result = placed;
+        placed = null;
+        return new Result(result, count, attempts);
+    }
+
+    private boolean overlaps(int x, int y, int width, int height) {
+        int cx = cellX(x);
+        int cy = cellY(y);
+        for (int ny = Math.max(0, cy - 1); ny <= Math.min(rows - 1, cy + 1); ny++) {
+            for (int nx = Math.max(0, cx - 1); nx <= Math.min(cols - 1, cx + 1); nx++) {
+                for (int j = cellHead[ny * cols + nx]; j >= 0; j = next[j]) {
+                    Obstacle other = placed.get(j);
+                    if (x < other.x + other.width + minDistance &&
+                            x + width + minDistance > other.x &&
+                            y < other.y + other.height + minDistance &&
+                            y + height + minDistance > other.y) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void add(Obstacle o) {
+        int index = placed.size();
+        placed.add(o);
+        if (index == next.length) next = Arrays.copyOf(next, index * 2);
+        int c = cellY(o.y) * cols + cellX(o.x);
+        next[index] = cellHead[c];
+        cellHead[c] = index;
+    }
+
+    private int cellX(int x) {
+        return Math.max(0, Math.min(cols - 1, x / cellSize));
+    }
+
+    private int cellY(int y) {
+        return Math.max(0, Math.min(rows - 1, y / cellSize));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,230 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * คิวขาออกของ client หนึ่งราย (game loop ใส่, writer ของ transport ดึงออกไปเขียน)
+ *
+ * frame แบ่งเป็นสองแบบ
+ *  - snapshot (MSG_SNAPSHOT) เก็บไว้แค่อันล่าสุด ถ้ามีอันใหม่มาก่อนอันเก่าถูกส่ง อันเก่าจะถูกทิ้ง (latest-wins)
+ *    ทำได้เพราะ delta ทุกอันอ้างอิง baseline ที่ client ack แล้ว ไม่ได้อ้างอิง snapshot ก่อนหน้า
+ *  - frame อื่น (เช่น MSG_CHUNK) ต้องถึงครบ จึงเข้าคิว FIFO ที่มีขนาดจำกัด และถูกส่งก่อน snapshot
+ *
+ * ถ้า snapshot ถูกทิ้งติดกันเกิน maxSkippedSnapshots หรือคิว reliable เต็ม ถือว่า client ตามไม่ทัน
+ * offer() จะคืนค่า false และ transport ต้องตัดการเชื่อมต่อ
+ *
+ * ใช้ ReentrantLock แทน synchronized/wait() เพราะ writer อาจเป็น virtual thread
+ * (Object.wait() ใน JDK 21 ตรึง carrier thread ไว้ตลอดเวลาที่รอ)
+ */
+public final class OutboundQueue {
+
+    public static final int MAX_RELIABLE_FRAMES = 64;
+
+    // ค่าเริ่มต้น = ไม่ได้รับ snapshot เลยประมาณ 3 วินาที (ที่ 30 tick/s)
+    public static int maxSkippedSnapshots = Integer.getInteger("tag.maxSkippedSnapshots", 90);
+
+    // จำนวน client ที่ถูกตัดเพราะตามไม่ทัน (รวมทุกการเชื่อมต่อ)
+    private static final AtomicLong laggardDisconnects = new AtomicLong();
+
+    /**
+     * frame หนึ่งอัน ส่ง object เดียวกันให้หลาย client ได้ (payload ห้ามถูกแก้ไขหลังสร้าง)
+     *
+     * NioTransport เขียน payload ใหญ่จากสำเนานอก heap ที่ทุกการเชื่อมต่อใช้ร่วมกัน (retainDirect / releaseDirect)
+     * สำเนานี้นับจำนวนผู้ใช้: ถูกยืมจาก pool ตามขนาด (SHARED_POOLS) ตอนผู้ใช้คนแรกขอ และคืน pool เมื่อคนสุดท้ายเขียนเสร็จ
+     * snapshot ใหม่ทุก tick จึงไม่จอง direct buffer ใหม่ (direct memory คืนได้ก็ต่อเมื่อ GC เก็บ
+     * และ JDK สั่ง System.gc() เองเมื่อใกล้เต็ม) ถ้าไม่มีใครถือไว้แล้วมีคนขออีก ก็แค่ยืมและคัดลอกใหม่
+     */
+    public static final class Frame {
+        public final byte type;
+        public final byte[] payload;
+        // ป้องกันด้วย lock ของ object นี้
+        private ByteBuffer direct;
+        private int directUsers;
+
+        public Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        /**
+         * view อ่านอย่างเดียวของ payload ใน direct buffer ที่ใช้ร่วมกัน (position / limit ของ view เป็นของผู้เรียก)
+         * ผู้เรียกต้องเรียก releaseDirect() หนึ่งครั้งเมื่อไม่ใช้ view นี้แล้ว (เขียนหมดหรือปิดการเชื่อมต่อ)
+         */
+        public ByteBuffer retainDirect() {
+            synchronized (this) {
+                if (directUsers++ == 0) {
+                    direct = acquireShared(payload.length).put(payload).flip();
+                }
+                return direct.asReadOnlyBuffer();
+            }
+        }
+
+        public void releaseDirect() {
+            ByteBuffer d;
+            synchronized (this) {
+                if (--directUsers > 0) return;
+                d = direct;
+                direct = null;
+            }
+            releaseShared(d);
+        }
+    }
+
+    // pool ของ payload ที่ใช้ร่วมกัน แยกตามขนาดยกกำลังสองตั้งแต่ MIN_SHARED_BYTES ถึง MAX_SHARED_BYTES
+    // payload ที่ใหญ่กว่านั้น (keyframe ของห้องใหญ่มาก) จองใหม่ทุกครั้ง
+    private static final int MIN_SHARED_BYTES = 512;
+    private static final int MAX_SHARED_BYTES = 256 * 1024;
+    private static final int MAX_POOLED_PER_SIZE = 32;
+    private static final BufferPool[] SHARED_POOLS = new BufferPool[Integer.numberOfTrailingZeros(MAX_SHARED_BYTES / MIN_SHARED_BYTES) + 1];
+
+    static {
+        for (int i = 0; i < SHARED_POOLS.length; i++) {
+            SHARED_POOLS[i] = new BufferPool(MIN_SHARED_BYTES << i, MAX_POOLED_PER_SIZE);
+        }
+    }
+
+    // buffer ที่ limit = bytes (write mode)
+    private static ByteBuffer acquireShared(int bytes) {
+        if (bytes > MAX_SHARED_BYTES) return ByteBuffer.allocateDirect(bytes);
+        int size = Math.max(MIN_SHARED_BYTES, Integer.highestOneBit(Math.max(1, bytes - 1)) << 1);
+        return SHARED_POOLS[Integer.numberOfTrailingZeros(size / MIN_SHARED_BYTES)].acquire().limit(bytes);
+    }
+
+    private static void releaseShared(ByteBuffer buf) {
+        int capacity = buf.capacity();
+        if (capacity > MAX_SHARED_BYTES || Integer.bitCount(capacity) != 1 || capacity < MIN_SHARED_BYTES) return;
+        SHARED_POOLS[Integer.numberOfTrailingZeros(capacity / MIN_SHARED_BYTES)].release(buf);
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Frame> reliable = new ArrayDeque<>();
+    private Frame snapshot;
+    private int skippedInARow = 0;
+    private long droppedSnapshots = 0;
+    // ไบต์ของ frame ที่ writer ดึงออกไปเขียนแล้ว (รวม header)
+    private long sentBytes = 0;
+    private boolean closed = false;
+
+    /**
+     * ใส่ frame ลงคิว (ไม่ block)
+     * @return false ถ้า client ตามไม่ทันจนควรถูกตัดการเชื่อมต่อ
+     */
+    public boolean offer(byte type, byte[] payload) {
+        return offer(new Frame(type, payload));
+    }
+
+    public boolean offer(Frame frame) {
+        lock.lock();
+        try {
+            if (closed) return true;
+            if (frame.type == WireProtocol.MSG_SNAPSHOT) {
+                if (snapshot != null) {
+                    droppedSnapshots++;
+                    if (++skippedInARow > maxSkippedSnapshots) return lagged();
+                }
+                snapshot = frame;
+            } else {
+                if (reliable.size() >= MAX_RELIABLE_FRAMES) return lagged();
+                reliable.add(frame);
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ต้องถือ lock
+    private boolean lagged() {
+        closed = true;
+        laggardDisconnects.incrementAndGet();
+        notEmpty.signalAll();
+        return false;
+    }
+
+    /**
+     * ดึง frame ถัดไปโดยไม่รอ คืนค่า null ถ้าคิวว่าง
+     */
+    public Frame poll() {
+        lock.lock();
+        try {
+            Frame next = reliable.poll();
+            if (next == null) {
+                if (snapshot == null) return null;
+                next = snapshot;
+                snapshot = null;
+                skippedInARow = 0;
+            }
+            sentBytes += WireProtocol.frameBytes(next.payload.length);
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * รอจนมี frame ถัดไป คืนค่า null เมื่อคิวถูกปิด
+     */
+    public Frame take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed) {
+                Frame next = poll();
+                if (next != null) return next;
+                notEmpty.await();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            reliable.clear();
+            snapshot = null;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * จำนวน frame ที่รอส่งอยู่ (reliable + snapshot ล่าสุด)
+     */
+    public int depth() {
+        lock.lock();
+        try {
+            return reliable.size() + (snapshot != null ? 1 : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long droppedSnapshots() {
+        lock.lock();
+        try {
+            return droppedSnapshots;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long sentBytes() {
+        lock.lock();
+        try {
+            return sentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static long laggardDisconnects() {
+        return laggardDisconnects.get();
+    }
+}
\ No newline at end of file
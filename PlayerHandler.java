@@ -1,11 +1,16 @@
 import javax.swing.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 
 public class PlayerHandler {
 
@@ -22,6 +27,8 @@ public class PlayerHandler {
         public  boolean isTagger ;
         public  String name;
         public boolean isReady = false;
+        // seq ของ input frame ล่าสุดที่ server ใช้แล้ว (ส่งใน snapshot ให้ client ใช้ reconcile)
+        public int lastInputSeq = 0;
 
         Player(int id, int x, int y, boolean isTagger) {
             this.id = id;
@@ -31,6 +38,14 @@ public class PlayerHandler {
             this.isTagger = isTagger;
             this.name = "P : " + id;
         }
+
+        // สำเนาสำหรับเก็บใน snapshot (ค่าใน object จริงจะถูกแก้ทุก tick)
+        Player(Player other) {
+            this(other.id, other.x, other.y, other.isTagger);
+            this.score = other.score;
+            this.isReady = other.isReady;
+            this.lastInputSeq = other.lastInputSeq;
+        }
         @Override
         public String toString() {
             return "Player" + id + " (" + x + "," + y + ")" + "Score : " + score + "Tag : " + isTagger;
@@ -40,7 +55,9 @@ public class PlayerHandler {
     //-----------------------GameState-------------------//
     public static class GameState implements Serializable {
         private static final long serialVersionUID = 3L;
+        public int seq;
         public ArrayList<Player> player;
+        // (snapshot ที่ส่งผ่าน WireProtocol ไม่มี obstacles เพราะส่งแยกเป็น chunk ด้วย MSG_CHUNK)
         public ArrayList<Obstacle> obstacles;
         public int remainingSeconds;
         public boolean gameover;
@@ -57,170 +74,273 @@ public class PlayerHandler {
         }
     }
 
+    //-------------------Tag / Collision--------------------------//
+    // (เรียกจาก game loop ของ Server ครั้งเดียวต่อ tick หลังจากขยับผู้เล่นทุกคนแล้ว)
+    /**
+     * ตรวจการแท็กและผลักผู้เล่นที่ชนกัน โดยดูเฉพาะคู่ที่ PlayerSpatialHash ให้มา
+     * แทนการวนผู้เล่นทุกคนเทียบกับทุกคน
+     *
+     * ทำงานบน PlayerStore ของห้องโดยตรง (ไม่มี Player object และไม่จองหน่วยความจำใหม่ต่อ tick)
+     * คู่ที่ได้เรียงตาม id ของผู้เล่น ลำดับของคู่จึงแน่นอนทุกครั้ง
+     */
+    static void resolveContacts(PlayerStore players, PlayerSpatialHash hash, ObstacleGrid grid) {
+        int pairCount = players.buildPairs(hash);
+
+        // 1. แท็ก: ได้ไม่เกินหนึ่งครั้งต่อ tick (เหมือนเดิมที่ break หลังแท็กสำเร็จ)
+        for (int k = 0; k < pairCount; k++) {
+            int a = players.slotAt(hash.pairA(k));
+            int b = players.slotAt(hash.pairB(k));
+            if (players.isTagger(a) == players.isTagger(b) || !hit(players, a, b)) continue;
+            int tagger = players.isTagger(a) ? a : b;
+            int other = players.isTagger(a) ? b : a;
+            players.score[tagger]++;
+            players.setTagger(tagger, false);
+            players.setTagger(other, true);
+            System.out.println("Player : " + players.id[tagger] + " tagged player : " + players.id[other]);
+            break;
+        }
+
+        // 2. ผลักคู่ที่ยังทับกันอยู่ให้แยกออกจากกัน
+        for (int k = 0; k < pairCount; k++) {
+            int a = players.slotAt(hash.pairA(k));
+            int b = players.slotAt(hash.pairB(k));
+            if (hit(players, a, b)) {
+                push(players, a, b, grid);
+            }
+        }
+    }
+
+    static boolean hit(Player a, Player b) {
+        return hit(a.x, a.y, b.x, b.y);
+    }
+
+    static boolean hit(PlayerStore players, int a, int b) {
+        return hit(players.x[a], players.y[a], players.x[b], players.y[b]);
+    }
+
+    private static boolean hit(int ax, int ay, int bx, int by) {
+        return (ax + HITBOX_PADDING < bx + PLAYER_SIZE - HITBOX_PADDING &&
+                ax + PLAYER_SIZE - HITBOX_PADDING > bx + HITBOX_PADDING &&
+                ay + HITBOX_PADDING < by + PLAYER_SIZE - HITBOX_PADDING &&
+                ay + PLAYER_SIZE - HITBOX_PADDING > by + HITBOX_PADDING);
+    }
+
+    // --- ★★★ 3. แก้ไขเมธอด checkPlayerCollisions ★★★ ---
+    private static void push(PlayerStore players, int moving, int other, ObstacleGrid grid) {
+        int movingX = players.x[moving];
+        int movingY = players.y[moving];
+        int otherX = players.x[other];
+        int otherY = players.y[other];
+
+        // (คำนวณ Overlap เหมือนเดิม) เป็นบวกเสมอเพราะ hit() แล้ว
+        int overlapX = Math.min(movingX + PLAYER_SIZE - HITBOX_PADDING, otherX + PLAYER_SIZE - HITBOX_PADDING)
+                - Math.max(movingX + HITBOX_PADDING, otherX + HITBOX_PADDING);
+        int overlapY = Math.min(movingY + PLAYER_SIZE - HITBOX_PADDING, otherY + PLAYER_SIZE - HITBOX_PADDING)
+                - Math.max(movingY + HITBOX_PADDING, otherY + HITBOX_PADDING);
+
+        // คำนวณพิกัด "เป้าหมาย" (Target) ที่ต้องการผลักไป
+        int movingTargetX = movingX;
+        int movingTargetY = movingY;
+        int otherTargetX = otherX;
+        int otherTargetY = otherY;
+
+        if (overlapX < overlapY) {
+            // ผลักในแนวนอน (แกน X) ครึ่งหนึ่งของ overlap ปัดขึ้น (= Math.ceil(overlap / 2.0) เดิม)
+            int push = (overlapX + 1) / 2;
+            if (movingX < otherX) {
+                movingTargetX -= push;
+                otherTargetX += push;
+            } else {
+                movingTargetX += push;
+                otherTargetX -= push;
+            }
+        } else {
+            // ผลักในแนวตั้ง (แกน Y)
+            int push = (overlapY + 1) / 2;
+            if (movingY < otherY) {
+                movingTargetY -= push;
+                otherTargetY += push;
+            } else {
+                movingTargetY += push;
+                otherTargetY -= push;
+            }
+        }
+
+        // ★★★ แทนที่จะแก้ไข x y โดยตรง ★★★
+        // ให้ Movement.trySetPosition ตรวจขอบแผนที่และการชนกับสิ่งกีดขวางให้เราเอง
+        Movement.trySetPosition(players, moving, movingTargetX, movingTargetY, grid);
+        Movement.trySetPosition(players, other, otherTargetX, otherTargetY, grid);
+    }
+    // --- สิ้นสุดการแก้ไข ---
+
+    //-------------------ClientSession--------------------------//
+    // สถานะของ client หนึ่งรายในมุมของเกม (ไม่ขึ้นกับ transport)
+    public static class ClientSession {
+        private static final SecureRandom UDP_TOKENS = new SecureRandom();
+
+        final int playerId;
+        final ClientConnection connection;
+
+        // ห้องที่อยู่ (null = ยังอยู่ใน lobby) ตั้งครั้งเดียวตอน OP_JOIN / OP_CREATE
+        volatile Room room;
+
+        // สถานะของ delta snapshot ฝั่ง client นี้
+        private volatile int ackedSeq = WireProtocol.NO_BASELINE;
+        int lastKeyframeSeq = 0;
+        // ส่ง MSG_WORLD แล้วหรือยัง และ chunk ที่ client นี้มีอยู่ (WorldChunks.key) ใช้จาก game loop เท่านั้น
+        boolean worldSent = false;
+        final Set<Long> loadedChunks = new HashSet<>();
+        // snapshot ที่ส่งให้ client นี้ (index = seq % SNAPSHOT_HISTORY) ใช้เป็น baseline ของ delta
+        // ถ้าไม่ได้เปิด area of interest ทุก client จะชี้ไปที่ snapshot อันเดียวกันของห้อง
+        final GameState[] sentHistory = new GameState[WireProtocol.SNAPSHOT_HISTORY];
+        // id ของผู้เล่นที่ client นี้เห็นอยู่ (InterestManager)
+        final Set<Integer> interest = new HashSet<>();
+
+        // ช่องทาง UDP (ดู UdpServer): client ต้องแนบ token นี้ในทุก datagram
+        // udpAddress = address ของ datagram ล่าสุดที่ token ถูกต้อง (null = ส่ง snapshot ทาง TCP)
+        final int udpToken = UDP_TOKENS.nextInt();
+        volatile SocketAddress udpAddress;
+        // seq ของ input ล่าสุดที่รับทาง UDP แล้ว (ใช้จาก thread รับ UDP เท่านั้น)
+        int udpInputSeq = 0;
+
+        // สถิติสำหรับ ServerMetrics
+        // (bytesIn / commands เขียนจาก thread ของ transport และ thread รับ UDP, udpBytesOut จาก game loop ของห้อง)
+        final long connectedNanos = System.nanoTime();
+        private volatile long bytesIn = 0;
+        private volatile long commands = 0;
+        private volatile long udpBytesOut = 0;
+
+        ClientSession(int playerId, ClientConnection connection) {
+            this.playerId = playerId;
+            this.connection = connection;
+        }
+
+        synchronized void recordFrame(int bytes) {
+            bytesIn += bytes;
+            commands++;
+        }
+
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        public long getCommands() {
+            return commands;
+        }
+
+        public long getUdpBytesOut() {
+            return udpBytesOut;
+        }
+
+        /**
+         * ส่ง snapshot ทาง UDP ถ้า client นี้ใช้ UDP อยู่และ snapshot เล็กพอ นอกนั้นส่งทาง TCP
+         * @param frame    MSG_SNAPSHOT ที่อาจใช้ร่วมกับ client อื่น
+         * @param reliable ต้องถึงแน่นอน (เช่น snapshot ที่จบเกม) ส่งทาง TCP เสมอ
+         */
+        void sendSnapshot(OutboundQueue.Frame frame, boolean reliable) {
+            UdpServer udp = Server.udpServer;
+            SocketAddress address = udpAddress;
+            byte[] payload = frame.payload;
+            if (!reliable && udp != null && address != null && payload.length <= WireProtocol.MAX_DATAGRAM_PAYLOAD) {
+                udp.sendSnapshot(address, payload);
+                udpBytesOut += 1 + payload.length;
+            } else {
+                connection.send(frame);
+            }
+        }
+
+        public int getAckedSeq() {
+            return ackedSeq;
+        }
+
+        void onAck(int seq) {
+            if (seq > ackedSeq) ackedSeq = seq;
+        }
+    }
+
     //-------------------ClientHandler--------------------------//
-    public static class ClientHandler implements Runnable {
+    // การเชื่อมต่อแบบ blocking (หนึ่ง thread ต่อ client) ใช้กับ BlockingTransport
+    public static class ClientHandler implements Runnable, ClientConnection {
         private final Socket socket;
-        private final ObjectInputStream in;
-        private final ObjectOutputStream out;
-        private final int playerId;
-        private final Map<Integer, Player> players;
-        private final Map<Integer, ClientHandler> handlers;
-        private final java.util.List<Obstacle> obstacles;
-
-        public ClientHandler(Socket socket, int playerId, Map<Integer, Player> players, Map<Integer, ClientHandler> handlers, java.util.List<Obstacle> obstacles) throws IOException {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final OutboundQueue outbound = new OutboundQueue();
+        private volatile int playerId = -1;
+
+        public ClientHandler(Socket socket) throws IOException {
             this.socket = socket;
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        }
+
+        @Override
+        public void sendHandshake(int playerId) {
             this.playerId = playerId;
-            this.players = players;
-            this.handlers = handlers;
-            this.obstacles = obstacles;
-            out = new ObjectOutputStream(socket.getOutputStream());
-            out.flush();
-            in = new ObjectInputStream(socket.getInputStream());
-            out.writeInt(playerId);
-            out.flush();
+            try {
+                WireProtocol.writeHandshake(out, playerId);
+            } catch (IOException e) {
+                System.out.println("Player"+playerId+" Error"+e.getMessage());
+                close();
+            }
         }
 
         @Override
         public void run() {
+            // การเขียนแยกไปอยู่ใน writer thread ของ client นี้ socket ที่ช้าจึงไม่ถ่วง game loop
+            Server.threadBuilder("client-writer-" + playerId).start(this::writeLoop);
             try {
-                Player player = players.get(playerId);
-                Server.broadcastPlayer();
-
+                // thread นี้มีหน้าที่อ่าน frame อย่างเดียว
+                // การขยับ/แท็ก/ชน และการ broadcast ทำใน game loop ของ Server
                 while (true) {
-                    String cmd = (String) in.readObject();
-                    if(cmd.equals("READY")){
-                        player.isReady = true;
-                        System.out.println("Player " + playerId + " is READY.");
-                        Server.checkAllReady();
-                    }
-
-                    if (Server.isGameStarted()) {
-                        Server.movePlayer(playerId, cmd);
-                        checkTag(playerId, player);
-                        checkPlayerCollisions(player); // <--- เมธอดนี้ถูกแก้ไขแล้ว
-                    }
-                    Server.broadcastPlayer();
+                    Server.onFrame(playerId, WireProtocol.readFrame(in));
                 }
             } catch (Exception e) {
                 System.out.println("Player " + playerId + " disconnected: " + e.getMessage());
             } finally {
-                players.remove(playerId);
-                handlers.remove(playerId);
-                Server.broadcastPlayer();
-                try { socket.close(); } catch (IOException ignored) {}
+                Server.onDisconnect(playerId);
+                close();
             }
         }
 
-
-        private void checkTag(int playerId, Player player) {
-            if (player.isTagger) {
-                synchronized (players) {
-                    for(Player other : players.values()){
-                        if(other.id != player.id && !other.isTagger){
-
-                            boolean hit = (player.x + HITBOX_PADDING < other.x + PLAYER_SIZE - HITBOX_PADDING &&
-                                    player.x + PLAYER_SIZE - HITBOX_PADDING > other.x + HITBOX_PADDING &&
-                                    player.y + HITBOX_PADDING < other.y + PLAYER_SIZE - HITBOX_PADDING &&
-                                    player.y + PLAYER_SIZE - HITBOX_PADDING > other.y + HITBOX_PADDING);
-
-                            if(hit) {
-                                player.score++;
-                                player.isTagger = false;
-                                other.isTagger = true;
-                                System.out.println("Player : " + player.id + " tagged player : " + other.id);
-                                break;
-                            }
-                        }
-                    }
+        private void writeLoop() {
+            try {
+                OutboundQueue.Frame frame;
+                while ((frame = outbound.take()) != null) {
+                    WireProtocol.writeFrame(out, frame.type, frame.payload);
+                    // flush เมื่อคิวว่างเท่านั้น frame ที่ค้างอยู่หลายอันจะถูกเขียนรวดเดียว
+                    if (outbound.depth() == 0) out.flush();
                 }
+            } catch (IOException e) {
+                System.out.println("Player"+playerId+" Error"+e.getMessage());
+            } catch (InterruptedException ignored) {
+            } finally {
+                close();
             }
         }
 
+        @Override
+        public void sendFrame(byte type, byte[] payload) {
+            send(new OutboundQueue.Frame(type, payload));
+        }
 
-        // --- ★★★ 3. แก้ไขเมธอด checkPlayerCollisions ★★★ ---
-        private void checkPlayerCollisions(Player movingPlayer) {
-            synchronized (players) {
-                for (Player other : players.values()) {
-                    if (other.id == movingPlayer.id) {
-                        continue;
-                    }
-
-                    // (ตรรกะการตรวจจับการชน 'hit' เหมือนเดิม)
-                    boolean hit = (movingPlayer.x + HITBOX_PADDING < other.x + PLAYER_SIZE - HITBOX_PADDING &&
-                            movingPlayer.x + PLAYER_SIZE - HITBOX_PADDING > other.x + HITBOX_PADDING &&
-                            movingPlayer.y + HITBOX_PADDING < other.y + PLAYER_SIZE - HITBOX_PADDING &&
-                            movingPlayer.y + PLAYER_SIZE - HITBOX_PADDING > other.y + HITBOX_PADDING);
-
-
-                    if (hit) {
-                        // (คำนวณ Overlap เหมือนเดิม)
-                        double overlapX = Math.min(movingPlayer.x + PLAYER_SIZE - HITBOX_PADDING, other.x + PLAYER_SIZE - HITBOX_PADDING)
-                                - Math.max(movingPlayer.x + HITBOX_PADDING, other.x + HITBOX_PADDING);
-                        double overlapY = Math.min(movingPlayer.y + PLAYER_SIZE - HITBOX_PADDING, other.y + PLAYER_SIZE - HITBOX_PADDING)
-                                - Math.max(movingPlayer.y + HITBOX_PADDING, other.y + HITBOX_PADDING);
-
-                        // --- (เริ่มส่วนที่แก้ไข) ---
-
-                        // คำนวณพิกัด "เป้าหมาย" (Target) ที่ต้องการผลักไป
-                        int movingTargetX = movingPlayer.x;
-                        int movingTargetY = movingPlayer.y;
-                        int otherTargetX = other.x;
-                        int otherTargetY = other.y;
-
-                        if (overlapX < overlapY) {
-                            // ผลักในแนวนอน (แกน X)
-                            double push = Math.ceil(overlapX / 2.0);
-                            if (movingPlayer.x < other.x) {
-                                movingTargetX -= push;
-                                otherTargetX += push;
-                            } else {
-                                movingTargetX += push;
-                                otherTargetX -= push;
-                            }
-                        } else {
-                            // ผลักในแนวตั้ง (แกน Y)
-                            double push = Math.ceil(overlapY / 2.0);
-                            if (movingPlayer.y < other.y) {
-                                movingTargetY -= push;
-                                otherTargetY += push;
-                            } else {
-                                movingTargetY += push;
-                                otherTargetY -= push;
-                            }
-                        }
-
-                        // ★★★ แทนที่จะแก้ไข .x .y โดยตรง ★★★
-                        // ให้เรียกเมธอด `trySetPlayerPosition` จาก Server
-                        // ซึ่งเมธอดนี้จะตรวจสอบการชนกับสิ่งกีดขวางให้เราเอง
-                        Server.trySetPlayerPosition(movingPlayer, movingTargetX, movingTargetY);
-                        Server.trySetPlayerPosition(other, otherTargetX, otherTargetY);
-
-                        // --- (สิ้นสุดส่วนที่แก้ไข) ---
-                    }
-                }
+        @Override
+        public void send(OutboundQueue.Frame frame) {
+            if (!outbound.offer(frame)) {
+                System.out.println("Player " + playerId + " is too far behind, disconnecting");
+                close();
             }
         }
-        // --- สิ้นสุดการแก้ไข ---
 
-
-        private Player getTagger() {
-            for(Player player : players.values()){
-                if(player.isTagger) return player;
-            }
-            return null;
+        @Override
+        public OutboundQueue outbound() {
+            return outbound;
         }
 
-        public void sendGameState(GameState gs) {
-            try {
-                if (out != null) {
-                    out.reset();
-                    out.writeObject(gs);
-                    out.flush();
-                }
-            }
-            catch (IOException e) {
-                System.out.println("Player"+playerId+" Error"+e.getMessage());
-            }
+        @Override
+        public void close() {
+            outbound.close();
+            try { socket.close(); } catch (IOException ignored) {}
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * spatial hash ของตำแหน่งผู้เล่น สร้างใหม่ทุก tick เพื่อหาคู่ผู้เล่นที่อาจชนกัน (broad phase)
+ *
+ * ใช้ช่องขนาด PLAYER_SIZE ซึ่งกว้างกว่า hitbox (PLAYER_SIZE - 2 * HITBOX_PADDING)
+ * ผู้เล่นแต่ละคนอยู่ในช่องเดียวตามมุมซ้ายบนของ hitbox และคู่ที่ hitbox ทับกันได้
+ * ต้องอยู่ในช่องเดียวกันหรือช่องข้างเคียง (3x3) เท่านั้น
+ *
+ * InterestManager ใช้ช่องขนาดใหญ่กว่า (= รัศมีที่มองเห็น) ผ่าน index() / head() / next()
+ * เพื่อหาผู้เล่นรอบตัวแต่ละ client โดยไม่ต้องวนทุกคน
+ *
+ * array ภายในถูกใช้ซ้ำระหว่าง tick จึงไม่จองหน่วยความจำใหม่ถ้าจำนวนผู้เล่นไม่เพิ่ม
+ * (ไม่ thread-safe ใช้จาก game loop เท่านั้น)
+ */
+public final class PlayerSpatialHash {
+
+    public static final int CELL_SIZE = PlayerHandler.PLAYER_SIZE;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int cellSize;
+
+    // open addressing: key ของช่อง -> หัวของ linked list ใน next[]
+    private long[] keys = new long[0];
+    private int[] heads = new int[0];
+    private int mask;
+
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+    private int[] next = new int[0];
+
+    // คู่ผู้เล่น (index ใน list) เรียงเป็น a0, b0, a1, b1, ...
+    private int[] pairs = new int[64];
+    private int pairCount;
+
+    public PlayerSpatialHash() {
+        this(CELL_SIZE);
+    }
+
+    public PlayerSpatialHash(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * สร้าง hash จากรายชื่อผู้เล่นแล้วหาคู่ที่อาจชนกัน
+     * @return จำนวนคู่ (อ่านด้วย pairA / pairB)
+     */
+    public int build(List<PlayerHandler.Player> players) {
+        index(players);
+        return findPairs(players.size());
+    }
+
+    /**
+     * เหมือน build(List) แต่อ่านตำแหน่งจาก array (index i = ผู้เล่นคนที่ i, ใช้ n ตัวแรก)
+     * สำหรับ PlayerStore ที่ไม่มี object ต่อผู้เล่น
+     */
+    public int build(int[] xs, int[] ys, int n) {
+        index(xs, ys, n);
+        return findPairs(n);
+    }
+
+    /**
+     * ใส่ผู้เล่นลงช่องอย่างเดียว (ไม่หาคู่) แล้วค้นด้วย head() / next()
+     */
+    public void index(List<PlayerHandler.Player> players) {
+        int n = players.size();
+        clear(n);
+        for (int i = 0; i < n; i++) {
+            PlayerHandler.Player p = players.get(i);
+            put(i, p.x, p.y);
+        }
+    }
+
+    public void index(int[] xs, int[] ys, int n) {
+        clear(n);
+        for (int i = 0; i < n; i++) {
+            put(i, xs[i], ys[i]);
+        }
+    }
+
+    private int findPairs(int n) {
+        pairCount = 0;
+        for (int i = 0; i < n; i++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int j = head(cellX[i] + dx, cellY[i] + dy); j >= 0; j = next[j]) {
+                        // เก็บเฉพาะ j > i เพื่อให้แต่ละคู่ออกมาครั้งเดียว
+                        if (j > i) addPair(i, j);
+                    }
+                }
+            }
+        }
+        return pairCount;
+    }
+
+    private void clear(int n) {
+        ensureCapacity(n);
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private void put(int i, int x, int y) {
+        int cx = cellOf(x);
+        int cy = cellOf(y);
+        cellX[i] = cx;
+        cellY[i] = cy;
+        int slot = slotFor(key(cx, cy));
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key(cx, cy);
+            heads[slot] = -1;
+        }
+        next[i] = heads[slot];
+        heads[slot] = i;
+    }
+
+    /**
+     * ช่องของพิกัด x หรือ y ของผู้เล่น (มุมซ้ายบนของ hitbox)
+     */
+    public int cellOf(int coordinate) {
+        return Math.floorDiv(coordinate + PlayerHandler.HITBOX_PADDING, cellSize);
+    }
+
+    /**
+     * index (ใน list ที่ index ไว้) ของผู้เล่นคนแรกในช่องนี้ หรือ -1 ถ้าช่องว่าง
+     */
+    public int head(int cx, int cy) {
+        int slot = slotFor(key(cx, cy));
+        return keys[slot] == EMPTY ? -1 : heads[slot];
+    }
+
+    /**
+     * ผู้เล่นคนถัดไปในช่องเดียวกับ i หรือ -1
+     */
+    public int next(int i) {
+        return next[i];
+    }
+
+    public int pairA(int k) {
+        return pairs[2 * k];
+    }
+
+    public int pairB(int k) {
+        return pairs[2 * k + 1];
+    }
+
+    private void addPair(int a, int b) {
+        if (2 * pairCount + 2 > pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        }
+        // เรียง a < b ไว้แล้ว ทำให้ลำดับของคู่แน่นอนทุกครั้ง
+        pairs[2 * pairCount] = a;
+        pairs[2 * pairCount + 1] = b;
+        pairCount++;
+    }
+
+    private void ensureCapacity(int n) {
+        if (next.length < n) {
+            int cap = Math.max(16, Integer.highestOneBit(Math.max(1, n - 1)) << 1);
+            cellX = new int[cap];
+            cellY = new int[cap];
+            next = new int[cap];
+            keys = new long[cap * 2];
+            heads = new int[cap * 2];
+            mask = cap * 2 - 1;
+        }
+    }
+
+    // คืนค่า slot ที่มี key นี้ หรือ slot ว่างที่ควรใส่ key นี้
+    private int slotFor(long key) {
+        int slot = (int) (mix(key) & mask);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 32);
+    }
+}
\ No newline at end of file
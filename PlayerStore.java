@@ -0,0 +1,230 @@
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * ผู้เล่นของห้องหนึ่งห้องเก็บเป็น array ของค่า primitive (struct-of-arrays) แทน object ต่อคน
+ *
+ * ผู้เล่นแต่ละคนอยู่ใน slot หนึ่งช่อง ทุก array ใช้ index เดียวกัน (id[slot], x[slot], ...)
+ * slot ของคนที่ออกไปแล้วเข้า free list และถูกใช้ซ้ำกับคนถัดไป array จึงไม่โตเกินจำนวนผู้เล่นสูงสุดที่เคยมีพร้อมกัน
+ * order เก็บ slot เรียงตาม id (ลำดับการวนทุกที่ในห้อง จึงไม่ขึ้นกับว่าใครได้ slot ไหน)
+ * id -> slot ใช้ตาราง open addressing ของ int จึงค้นหาได้โดยไม่ box
+ *
+ * การขยับ แท็ก และผลักทำบน array เหล่านี้โดยตรง tick ปกติจึงไม่จองหน่วยความจำใหม่เลย
+ * การจองเกิดเฉพาะตอนผู้เล่นเข้าห้องจนต้องขยาย array และตอนแปลงเป็น PlayerHandler.Player ให้ snapshot (toPlayer)
+ *
+ * ไม่ thread-safe ใช้จาก game loop ของห้องเท่านั้น
+ */
+final class PlayerStore {
+
+    static final byte FLAG_READY = 1;
+    static final byte FLAG_TAGGER = 2;
+
+    private static final int EMPTY = -1;
+
+    // ข้อมูลต่อ slot (อ่าน/เขียนตรงๆ ได้ภายในห้อง)
+    int[] id = new int[16];
+    int[] x = new int[16];
+    int[] y = new int[16];
+    int[] score = new int[16];
+    int[] lastInputSeq = new int[16];
+    byte[] flags = new byte[16];
+    // คิว input ของผู้เล่นใน slot นี้ (คิวเดียวกับที่ Room.queueInput ใส่) null = ไม่มีคิว
+    Queue<Room.Input>[] inputs = newInputArray(16);
+
+    // slot ที่ใช้อยู่เรียงตาม id
+    private int[] order = new int[16];
+    private int count = 0;
+
+    // slot ที่ว่าง (stack) และ slot ที่ยังไม่เคยใช้ตัวแรก
+    private int[] free = new int[16];
+    private int freeCount = 0;
+    private int highWater = 0;
+
+    // id -> slot (linear probing, EMPTY = ช่องว่าง)
+    private int[] tableIds = newTable(32);
+    private int[] tableSlots = new int[32];
+
+    // ตำแหน่งเรียงตาม order สำหรับ PlayerSpatialHash (ใช้ array เดิมซ้ำทุก tick)
+    private int[] orderedX = new int[16];
+    private int[] orderedY = new int[16];
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * slot ของผู้เล่นลำดับที่ k เมื่อเรียงตาม id (0 <= k < count())
+     */
+    int slotAt(int k) {
+        return order[k];
+    }
+
+    /**
+     * @return slot ของผู้เล่น id นี้ หรือ -1 ถ้าไม่มี
+     */
+    int slotOf(int playerId) {
+        int mask = tableIds.length - 1;
+        for (int i = mix(playerId) & mask; tableIds[i] != EMPTY; i = (i + 1) & mask) {
+            if (tableIds[i] == playerId) return tableSlots[i];
+        }
+        return -1;
+    }
+
+    boolean isTagger(int slot) {
+        return (flags[slot] & FLAG_TAGGER) != 0;
+    }
+
+    void setTagger(int slot, boolean tagger) {
+        flags[slot] = (byte) (tagger ? flags[slot] | FLAG_TAGGER : flags[slot] & ~FLAG_TAGGER);
+    }
+
+    boolean isReady(int slot) {
+        return (flags[slot] & FLAG_READY) != 0;
+    }
+
+    void setReady(int slot) {
+        flags[slot] |= FLAG_READY;
+    }
+
+    /**
+     * เพิ่มผู้เล่น (id ต้องยังไม่มีในห้อง)
+     * @return slot ที่ได้
+     */
+    int add(int playerId, int startX, int startY, Queue<Room.Input> inputQueue) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (highWater == id.length) grow(id.length * 2);
+            slot = highWater++;
+        }
+        id[slot] = playerId;
+        x[slot] = startX;
+        y[slot] = startY;
+        score[slot] = 0;
+        lastInputSeq[slot] = 0;
+        flags[slot] = 0;
+        inputs[slot] = inputQueue;
+
+        // แทรกลง order ตามลำดับ id
+        int k = count;
+        while (k > 0 && id[order[k - 1]] > playerId) {
+            order[k] = order[k - 1];
+            k--;
+        }
+        order[k] = slot;
+        count++;
+
+        if ((count + 1) * 2 > tableIds.length) rehash(tableIds.length * 2);
+        put(playerId, slot);
+        return slot;
+    }
+
+    /**
+     * ลบผู้เล่น slot ของเขากลับเข้า free list
+     * @return false ถ้าไม่มีผู้เล่น id นี้
+     */
+    boolean remove(int playerId) {
+        int slot = slotOf(playerId);
+        if (slot < 0) return false;
+        delete(playerId);
+        int k = 0;
+        while (order[k] != slot) k++;
+        System.arraycopy(order, k + 1, order, k, count - k - 1);
+        count--;
+        inputs[slot] = null;
+        free[freeCount++] = slot;
+        return true;
+    }
+
+    /**
+     * ใส่ตำแหน่งของทุกคน (เรียงตาม id) ลง hash แล้วหาคู่ที่อาจชนกัน
+     * index ของคู่ที่ได้คือลำดับ k ใน order (แปลงเป็น slot ด้วย slotAt)
+     */
+    int buildPairs(PlayerSpatialHash hash) {
+        for (int k = 0; k < count; k++) {
+            int slot = order[k];
+            orderedX[k] = x[slot];
+            orderedY[k] = y[slot];
+        }
+        return hash.build(orderedX, orderedY, count);
+    }
+
+    /**
+     * สำเนาเป็น object สำหรับ snapshot / encode (ส่วนเดียวของห้องที่ยังใช้ Player)
+     */
+    PlayerHandler.Player toPlayer(int slot) {
+        PlayerHandler.Player p = new PlayerHandler.Player(id[slot], x[slot], y[slot], isTagger(slot));
+        p.score = score[slot];
+        p.isReady = isReady(slot);
+        p.lastInputSeq = lastInputSeq[slot];
+        return p;
+    }
+
+    private void grow(int capacity) {
+        id = Arrays.copyOf(id, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        score = Arrays.copyOf(score, capacity);
+        lastInputSeq = Arrays.copyOf(lastInputSeq, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        inputs = Arrays.copyOf(inputs, capacity);
+        order = Arrays.copyOf(order, capacity);
+        free = Arrays.copyOf(free, capacity);
+        orderedX = Arrays.copyOf(orderedX, capacity);
+        orderedY = Arrays.copyOf(orderedY, capacity);
+    }
+
+    //------------------------id -> slot----------------------------//
+    private void put(int playerId, int slot) {
+        int mask = tableIds.length - 1;
+        int i = mix(playerId) & mask;
+        while (tableIds[i] != EMPTY) i = (i + 1) & mask;
+        tableIds[i] = playerId;
+        tableSlots[i] = slot;
+    }
+
+    // ลบแบบเลื่อนตัวที่ตามมาย้อนกลับ (ไม่ต้องมี tombstone)
+    private void delete(int playerId) {
+        int mask = tableIds.length - 1;
+        int i = mix(playerId) & mask;
+        while (tableIds[i] != playerId) i = (i + 1) & mask;
+        int hole = i;
+        for (int j = (hole + 1) & mask; tableIds[j] != EMPTY; j = (j + 1) & mask) {
+            int home = mix(tableIds[j]) & mask;
+            // ย้าย j มาที่ hole ได้ถ้า home ของ j ไม่อยู่ในช่วง (hole, j]
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                tableIds[hole] = tableIds[j];
+                tableSlots[hole] = tableSlots[j];
+                hole = j;
+            }
+        }
+        tableIds[hole] = EMPTY;
+    }
+
+    private void rehash(int size) {
+        int[] oldIds = tableIds;
+        int[] oldSlots = tableSlots;
+        tableIds = newTable(size);
+        tableSlots = new int[size];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) put(oldIds[i], oldSlots[i]);
+        }
+    }
+
+    private static int[] newTable(int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Queue<Room.Input>[] newInputArray(int size) {
+        return (Queue<Room.Input>[]) new Queue[size];
+    }
+}
\ No newline at end of file
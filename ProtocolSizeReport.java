@@ -0,0 +1,97 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * เครื่องมือเปรียบเทียบจำนวนไบต์ต่อ snapshot ระหว่างรูปแบบเดิม
+ * (ObjectOutputStream.reset() + writeObject(GameState)) กับ WireProtocol
+ * ทั้งแบบ keyframe และแบบ delta ที่มีผู้เล่นขยับแค่คนเดียว
+ *
+ * วิธีใช้: java ProtocolSizeReport [จำนวนสิ่งกีดขวาง]
+ */
+public class ProtocolSizeReport {
+
+    public static void main(String[] args) throws IOException {
+        int numObstacles = (args.length > 0) ? Integer.parseInt(args[0]) : 15;
+        int[] playerCounts = {1, 2, 4, 8, 16, 32};
+
+        System.out.printf("%-8s %-10s %12s %10s %10s %8s%n", "players", "obstacles", "serialized", "keyframe", "delta(1)", "ratio");
+        for (int n : playerCounts) {
+            PlayerHandler.GameState gs = sampleState(n, numObstacles);
+            int serialized = serializedSize(gs);
+
+            PlayerHandler.GameState baseline = copyOf(gs, 1);
+            PlayerHandler.GameState current = copyOf(gs, 2);
+            current.player.get(0).x += 5;
+            int keyframe = 3 + WireProtocol.encodeSnapshot(current, null).length;
+            int delta = 3 + WireProtocol.encodeSnapshot(current, baseline).length;
+            System.out.printf("%-8d %-10d %12d %10d %10d %7.1fx%n", n, numObstacles, serialized, keyframe, delta, (double) serialized / delta);
+        }
+
+        int obstacleFrame = 3 + WireProtocol.encodeObstacles(sampleState(0, numObstacles).obstacles).length;
+        System.out.println();
+        System.out.println("obstacle layout: " + obstacleFrame + " bytes once per join/match (was included in every serialized snapshot)");
+
+        int oldCommand = serializedCommandSize("RIGHT");
+        int inputFrame = WireProtocol.frameBytes(WireProtocol.encodeInput(1, WireProtocol.INPUT_RIGHT).length);
+        System.out.println();
+        System.out.println("input command: serialized String = " + oldCommand + " bytes, binary input frame = " + inputFrame + " bytes");
+    }
+
+    static PlayerHandler.GameState sampleState(int numPlayers, int numObstacles) {
+        Random rand = new Random(42);
+        ArrayList<PlayerHandler.Player> players = new ArrayList<>();
+        for (int i = 0; i < numPlayers; i++) {
+            PlayerHandler.Player p = new PlayerHandler.Player(i, rand.nextInt(Server.MAP_WIDTH), rand.nextInt(Server.MAP_HEIGHT), i == 0);
+            p.score = rand.nextInt(10);
+            p.isReady = true;
+            players.add(p);
+        }
+        ArrayList<Obstacle> obstacles = new ArrayList<>();
+        for (int i = 0; i < numObstacles; i++) {
+            int type = rand.nextInt(3);
+            obstacles.add(new Obstacle(rand.nextInt(Server.MAP_WIDTH), rand.nextInt(Server.MAP_HEIGHT), 100, 100, type));
+        }
+        return new PlayerHandler.GameState(players, obstacles, 42, false, -1, true);
+    }
+
+    static PlayerHandler.GameState copyOf(PlayerHandler.GameState gs, int seq) {
+        ArrayList<PlayerHandler.Player> players = new ArrayList<>();
+        for (PlayerHandler.Player p : gs.player) {
+            players.add(new PlayerHandler.Player(p));
+        }
+        PlayerHandler.GameState copy = new PlayerHandler.GameState(players, null, gs.remainingSeconds, gs.gameover, gs.winnerId, gs.gameStarted);
+        copy.seq = seq;
+        return copy;
+    }
+
+    /**
+     * ขนาดของหนึ่ง broadcast ในรูปแบบเดิม: stream ต่อเนื่องที่ reset() ก่อนทุกครั้ง
+     * จึงต้องส่ง class descriptor ซ้ำทุก snapshot
+     */
+    static int serializedSize(PlayerHandler.GameState gs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.reset();
+        out.writeObject(gs);
+        out.flush();
+        int first = bytes.size();
+        out.reset();
+        out.writeObject(gs);
+        out.flush();
+        return bytes.size() - first;
+    }
+
+    static int serializedCommandSize(String cmd) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(cmd);
+        out.flush();
+        int first = bytes.size();
+        out.writeObject(new String(cmd));
+        out.flush();
+        return bytes.size() - first;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,543 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ห้องเล่นหนึ่งห้อง = หนึ่งแมตช์
+ *
+ * เป็นเจ้าของผู้เล่น สิ่งกีดขวาง นาฬิกา และสถานะของแมตช์ทั้งหมด
+ * หลายห้องรันพร้อมกันใน JVM เดียวบน scheduler ที่ Server ใช้ร่วมกัน
+ * (tick ของห้องเดียวกันไม่ถูกรันซ้อนกัน เพราะ scheduleAtFixedRate ไม่รัน task เดิมพร้อมกัน)
+ *
+ * สถานะของแมตช์เปลี่ยนได้ใน tick() เท่านั้น: thread ของ transport แค่ใส่ input / READY / การเข้าออกห้องลงคิว
+ * ผลของแมตช์จึงขึ้นกับ seed และเหตุการณ์ที่ดึงจากคิวในแต่ละ tick เท่านั้น (บันทึกได้ด้วย MatchRecorder)
+ *
+ * ผู้เล่นตัวจริง (players) เป็น PlayerStore ของ array ค่า primitive ที่ถูกอ่านเขียนจาก tick() เท่านั้นจึงไม่มีล็อก
+ * tick ปกติ (ขยับ แท็ก ผลัก) จึงไม่จองหน่วยความจำใหม่ มีแค่ broadcastPlayer() ที่แปลงเป็น Player สำหรับ snapshot
+ * (scheduleAtFixedRate รับประกัน happens-before ระหว่าง tick ที่ต่อกัน แม้จะรันคนละ thread ของ scheduler)
+ * ทุก tick จบด้วยการเผยแพร่ GameState ชุดใหม่ที่ไม่ถูกแก้อีกผ่าน AtomicReference ครั้งเดียว
+ * โค้ดนอก game loop (metrics, ผู้ชม, MatchReplay) อ่านจาก snapshot() โดยไม่ต้องล็อก
+ */
+public class Room {
+
+    // ความหนาแน่นของสิ่งกีดขวาง (ชิ้นต่อพื้นที่หนึ่งล้าน px²) ค่าเริ่มต้นได้ 15 ชิ้นบนแผนที่ 1000x600 เหมือนเดิม
+    public static double obstaclesPerMegapixel = Double.parseDouble(System.getProperty("tag.obstaclesPerMegapixel", "25"));
+    // seed ของผังสิ่งกีดขวาง (ตั้งไว้ = ทุกห้องได้ผังเดียวกันทุกครั้ง, ไม่ตั้ง = สุ่ม seed ใหม่ต่อห้องและพิมพ์ไว้ใน log)
+    public static Long obstacleSeed = Long.getLong("tag.obstacleSeed");
+    private static final int MIN_OBSTACLE_DISTANCE = 25;
+    // ถ้าสุ่มตำแหน่งครบเท่านี้แล้วยังทับชิ้นอื่น ให้ข้ามชิ้นนั้นไป (ห้องถูกสร้างขณะถือ lock ของ lobby)
+    private static final int MAX_PLACEMENT_ATTEMPTS = 1000;
+    // งบการสุ่มรวมของทั้งผัง (ต่อชิ้นที่ขอ) แผนที่ที่แน่นจนวางไม่ครบจะหยุดเมื่อใช้งบหมด
+    private static final int PLACEMENT_BUDGET_PER_OBSTACLE = 50;
+    private static final int MIN_PLACEMENT_BUDGET = 100_000;
+
+    static final int NUM_OBSTACLE_TYPES = 3;
+
+    // (SpriteCache ของ client ใช้ย่อรูปให้ตรงขนาดนี้ล่วงหน้า)
+    static final int[][] OBSTACLE_TYPE_SIZES = {
+            {125, 125}, // type 0 (หิน)
+            {100, 100}, // type 1 (กล่องไม้)
+            {60, 60}  // type 2 (พุ่มไม้)
+    };
+
+    private static final int GAME_DURATION_SECONDS = 60;
+
+    // (ใช้ PlayerHandler.PLAYER_SIZE ที่ถูกต้อง)
+    private static final int PADDING = PlayerHandler.PLAYER_SIZE + 5;
+
+    // client ส่ง input tick ละครั้ง ถ้าค้างเกินนี้จะทิ้งอันเก่าสุด (กันไม่ให้ input ล่าช้าสะสม)
+    private static final int MAX_PENDING_INPUTS = 4;
+
+    // chunk ที่ส่งให้ client หนึ่งรายได้ไม่เกินเท่านี้ต่อ tick (ที่เหลือส่งใน tick ถัดไป) กันคิว reliable ล้น
+    private static final int MAX_CHUNKS_PER_TICK = 16;
+
+    final String name;
+
+    // วนตามลำดับ id เสมอ (ลำดับการแท็ก/ชนและ snapshot จึงแน่นอน) ใช้จาก game loop เท่านั้น
+    private final PlayerStore players = new PlayerStore();
+    // เขียนจาก lobby / transport อ่านจาก game loop (วนได้โดยไม่ต้องล็อก)
+    private final Map<Integer, PlayerHandler.ClientSession> sessions = new ConcurrentHashMap<>();
+    // สถานะล่าสุดที่ tick เผยแพร่แล้ว (ผู้เล่นในนั้นเป็นสำเนา ห้ามแก้)
+    private final AtomicReference<PlayerHandler.GameState> published = new AtomicReference<>(
+            new PlayerHandler.GameState(new ArrayList<>(), null, GAME_DURATION_SECONDS, false, -1, false));
+
+    // input frame ที่ client ส่งมา game loop ใช้ไม่เกินหนึ่ง frame ต่อผู้เล่นต่อ tick
+    // (คิวของผู้เล่นที่อยู่ในห้องแล้วถูกเก็บไว้ใน PlayerStore ด้วย game loop จึงไม่ต้องค้น map นี้)
+    private final Map<Integer, Queue<Input>> pendingInputs = new ConcurrentHashMap<>();
+    // การเข้า/ออกห้อง (id >= 0 = เข้า, ~id = ออก) มีผลกับผู้เล่นใน tick ถัดไป
+    private final Queue<Integer> pendingMembership = new ConcurrentLinkedQueue<>();
+    // ผู้เล่นที่กด READY รอประมวลผลใน tick ถัดไป
+    private final Queue<Integer> pendingReady = new ConcurrentLinkedQueue<>();
+
+    // สิ่งกีดขวางเก็บสองแบบ: ดัชนีสำหรับตรวจชน และ chunk ที่เข้ารหัสไว้แล้วสำหรับส่งให้ client
+    // ทั้งคู่สร้างครั้งเดียวใน spawnObstacles() และไม่ถูกแก้ไข จึงอ่านได้โดยไม่ต้องล็อก
+    private volatile ObstacleGrid obstacleGrid = ObstacleGrid.EMPTY;
+    private volatile WorldChunks world;
+
+    private volatile boolean gameStarted = false;
+    private volatile boolean gameOver = false;
+    private volatile int remainingSeconds = GAME_DURATION_SECONDS;
+    private int winner = -1;
+    // ลำดับการเข้าห้อง ใช้กำหนดจุดเกิด (id ของผู้เล่นไม่ต่อเนื่องเพราะใช้ร่วมกันทุกห้อง)
+    private int nextSpawn = 0;
+    private long tickCount = 0;
+    // จำนวน tick ทั้งหมดตั้งแต่เปิดห้อง (tickCount เริ่มใหม่ตอนเริ่มแมตช์)
+    private int ticks = 0;
+
+    // seed ของห้อง ใช้ทั้งวางสิ่งกีดขวางและสุ่ม tagger
+    final long seed;
+    private final Random matchRandom;
+    // null = ไม่ได้บันทึกแมตช์
+    private final MatchRecorder recorder;
+    private final PlayerSpatialHash contactHash = new PlayerSpatialHash();
+
+    private int snapshotSeq = 0;
+    // null = ทุก client ได้ผู้เล่นทุกคน
+    private final InterestManager interest = InterestManager.create();
+
+    private ScheduledFuture<?> loop;
+
+    Room(String name) {
+        this(name, obstacleSeed != null ? obstacleSeed : new Random().nextLong(), null, true);
+    }
+
+    /**
+     * ห้องสำหรับ MatchReplay: ใช้ seed และผังสิ่งกีดขวางจากไฟล์บันทึก ไม่บันทึกซ้ำ และไม่มี game loop ของตัวเอง
+     */
+    Room(String name, long seed, List<Obstacle> layout) {
+        this(name, seed, layout, false);
+    }
+
+    private Room(String name, long seed, List<Obstacle> layout, boolean record) {
+        this.name = name;
+        this.seed = seed;
+        this.matchRandom = new Random(seed);
+        List<Obstacle> obstacles = (layout != null) ? layout : spawnObstacles();
+        // ไม่เก็บ list ไว้ (object ต่อชิ้นเปลือง memory บนแผนที่ใหญ่) เหลือแค่ดัชนีกับ chunk ที่เข้ารหัสแล้ว
+        obstacleGrid = new ObstacleGrid(obstacles, Server.mapWidth, Server.mapHeight, ObstacleGrid.DEFAULT_CELL_SIZE);
+        world = new WorldChunks(obstacles, Server.mapWidth, Server.mapHeight, WorldChunks.chunkSize);
+        recorder = record ? MatchRecorder.open(name, seed, Server.mapWidth, Server.mapHeight, obstacles) : null;
+    }
+
+    /**
+     * เริ่ม game loop ของห้องนี้แบบ fixed-rate บน scheduler ที่ใช้ร่วมกัน
+     */
+    void start(ScheduledExecutorService scheduler, int tickRate) {
+        loop = scheduler.scheduleAtFixedRate(new GameLoop(), 0, 1_000_000_000L / tickRate, TimeUnit.NANOSECONDS);
+    }
+
+    void stop() {
+        if (loop != null) loop.cancel(false);
+        if (recorder != null) recorder.close(ticks);
+    }
+
+    //------------------------players----------------------------//
+    /**
+     * เพิ่ม session นี้เข้าห้อง ต้องส่ง MSG_ROOM ให้ client ก่อนเรียก
+     * เพราะ session จะเริ่มได้รับ snapshot ใน tick ถัดไปทันที (ตัวผู้เล่นถูกเพิ่มใน tick นั้น)
+     */
+    void join(PlayerHandler.ClientSession session) {
+        sessions.put(session.playerId, session);
+        queueJoin(session.playerId);
+    }
+
+    /**
+     * ลบ session ออกจากห้อง (เรียกเมื่อ client หลุดการเชื่อมต่อ) ตัวผู้เล่นถูกลบใน tick ถัดไป
+     */
+    void leave(int playerId) {
+        sessions.remove(playerId);
+        queueLeave(playerId);
+    }
+
+    // (MatchReplay เรียกสองเมธอดนี้ตรงๆ ตามที่บันทึกไว้ เพราะไม่มี session)
+    void queueJoin(int playerId) {
+        pendingInputs.put(playerId, new ConcurrentLinkedQueue<>());
+        pendingMembership.offer(playerId);
+    }
+
+    void queueLeave(int playerId) {
+        pendingInputs.remove(playerId);
+        pendingMembership.offer(~playerId);
+    }
+
+    // จำนวน session (นับคนที่เพิ่งเข้า/ออกทันที ไม่ต้องรอ tick)
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * ห้องที่ quick match ส่งผู้เล่นเข้าได้: ยังไม่เริ่มแมตช์และยังไม่เต็ม
+     */
+    boolean isOpen(int capacity) {
+        return !gameStarted && !gameOver && sessions.size() < capacity;
+    }
+
+    // input frame หนึ่งอัน: ปุ่มที่ client กดค้างอยู่ใน tick นั้น
+    static final class Input {
+        final int seq;
+        final int buttons;
+
+        Input(int seq, int buttons) {
+            this.seq = seq;
+            this.buttons = buttons;
+        }
+    }
+
+    /**
+     * เก็บ input frame จาก client ไว้ในคิว (เรียกจาก thread ของ transport)
+     * frame จะถูกใช้ใน tick ถัดไปของ game loop เท่านั้น
+     */
+    void queueInput(int playerId, int seq, int buttons) {
+        Queue<Input> queue = pendingInputs.get(playerId);
+        if (queue == null) return;
+        while (queue.size() >= MAX_PENDING_INPUTS) {
+            queue.poll();
+        }
+        queue.offer(new Input(seq, buttons));
+    }
+
+    void queueReady(int playerId) {
+        pendingReady.offer(playerId);
+    }
+
+    private void checkAllReady() {
+        if (gameStarted) return;
+        if (players.count() == 0) return;
+        boolean allReady = true;
+        for (int k = 0; k < players.count(); k++) {
+            if (!players.isReady(players.slotAt(k))) {
+                allReady = false;
+                break;
+            }
+        }
+        if (allReady) {
+            System.out.println("[" + name + "] All players are READY! Starting game...");
+            startGame();
+        }
+    }
+
+    private void startGame() {
+        if (gameStarted) return;
+        gameStarted = true;
+        remainingSeconds = GAME_DURATION_SECONDS;
+        tickCount = 0;
+        if (players.count() > 0) {
+            for (int k = 0; k < players.count(); k++) {
+                int slot = players.slotAt(k);
+                players.score[slot] = 0;
+                players.setTagger(slot, false);
+            }
+            int tagger = players.slotAt(matchRandom.nextInt(players.count()));
+            players.setTagger(tagger, true);
+            System.out.println("[" + name + "] Player " + players.id[tagger] + " is the new Tagger.");
+        }
+        // เริ่มแมตช์ใหม่ ส่งผังสิ่งกีดขวางให้ทุกคนอีกครั้ง
+        for (PlayerHandler.ClientSession session : sessions.values()) {
+            session.worldSent = false;
+        }
+    }
+
+    private List<Obstacle> spawnObstacles() {
+        int mapWidth = Server.mapWidth;
+        int mapHeight = Server.mapHeight;
+        int count = (int) Math.round(obstaclesPerMegapixel * mapWidth * mapHeight / 1_000_000.0);
+        long start = System.nanoTime();
+        ObstaclePlacer.Result placement = new ObstaclePlacer(mapWidth, mapHeight, MIN_OBSTACLE_DISTANCE, PADDING, OBSTACLE_TYPE_SIZES)
+                .place(seed, count, MAX_PLACEMENT_ATTEMPTS, Math.max(MIN_PLACEMENT_BUDGET, count * PLACEMENT_BUDGET_PER_OBSTACLE));
+        List<Obstacle> obstacles = placement.obstacles;
+        long micros = (System.nanoTime() - start) / 1000;
+        if (!placement.complete()) {
+            System.out.println("[" + name + "] Could only place " + obstacles.size() + " of " + placement.requested
+                    + " obstacles (" + obstaclesPerMegapixel + " per megapixel is too dense for MIN_OBSTACLE_DISTANCE "
+                    + MIN_OBSTACLE_DISTANCE + ").");
+        }
+        System.out.println("[" + name + "] Spawned " + obstacles.size() + " obstacles on a " + mapWidth + "x" + mapHeight
+                + " map (seed " + seed + ", " + placement.attempts + " attempts in " + micros + " us).");
+        return obstacles;
+    }
+
+
+    // --- ★★★ 1. แก้ไข movePlayer ให้เรียกใช้เมธอดใหม่ ★★★ ---
+    /**
+     * ขยับผู้เล่นตาม input frame หนึ่งอัน (ความเร็วกำหนดที่ server เท่านั้น)
+     * @return true ถ้ามีการกดทิศทาง
+     */
+    private boolean movePlayer(int slot, Input input) {
+        if (input.seq <= players.lastInputSeq[slot]) return false;
+        players.lastInputSeq[slot] = input.seq;
+
+        // กติกาเดียวกับที่ client ใช้ทำนายตำแหน่งตัวเอง (Movement)
+        return Movement.applyInput(players, slot, input.buttons, obstacleGrid);
+    }
+
+    // (BenchFixtures ใช้ผังของห้องจริงวัด resolveContacts)
+    ObstacleGrid obstacleGrid() {
+        return obstacleGrid;
+    }
+
+
+    /**
+     * game loop แบบ fixed-rate: ทุก tick จะดึงคำสั่งที่ค้างอยู่มาประมวลผล
+     * ตรวจการแท็กและการชนครั้งเดียว แล้วส่ง snapshot ออกไปหนึ่งครั้ง
+     * นาฬิกานับถอยหลังของเกมก็เดินตาม tick นี้ด้วย
+     */
+    class GameLoop implements Runnable {
+        @Override
+        public void run() {
+            try {
+                tick();
+            } catch (Exception e) {
+                // ถ้าโยน exception ออกไป ScheduledExecutorService จะหยุด loop ทันที
+                e.printStackTrace();
+            }
+        }
+    }
+
+    void tick() {
+        long start = System.nanoTime();
+        ticks++;
+        processInputs();
+        if (gameStarted && !gameOver && ++tickCount % Server.tickRate == 0) {
+            countdown();
+        }
+        if (recorder != null && ticks % Server.tickRate == 0) {
+            recorder.checksum(ticks, stateHash());
+        }
+        broadcastPlayer();
+        ServerMetrics.TICK.record(System.nanoTime() - start);
+    }
+
+    private void processInputs() {
+        Integer member;
+        while ((member = pendingMembership.poll()) != null) {
+            applyMembership(member);
+        }
+
+        Integer readyId;
+        while ((readyId = pendingReady.poll()) != null) {
+            if (recorder != null) recorder.ready(ticks, readyId);
+            int slot = players.slotOf(readyId);
+            if (slot >= 0 && !players.isReady(slot)) {
+                players.setReady(slot);
+                System.out.println("[" + name + "] Player " + readyId + " is READY.");
+                checkAllReady();
+            }
+        }
+
+        // ไล่ตามลำดับ id เพื่อให้ผลลัพธ์ไม่ขึ้นกับลำดับการทำงานของ thread
+        // ใช้ไม่เกินหนึ่ง frame ต่อผู้เล่นต่อ tick การส่ง input ถี่ๆ จึงไม่ทำให้เดินเร็วขึ้น
+        boolean moved = false;
+        for (int k = 0; k < players.count(); k++) {
+            int slot = players.slotAt(k);
+            Queue<Input> queue = players.inputs[slot];
+            if (queue == null) continue;
+            Input input = queue.poll();
+            if (input != null && recorder != null) recorder.input(ticks, players.id[slot], input.seq, input.buttons);
+            if (input != null && gameStarted && !gameOver) {
+                moved |= movePlayer(slot, input);
+            }
+        }
+
+        // ตรวจแท็ก/ชนครั้งเดียวต่อ tick เฉพาะคู่ที่อยู่ใกล้กัน
+        if (moved) {
+            PlayerHandler.resolveContacts(players, contactHash, obstacleGrid);
+        }
+    }
+
+    private void applyMembership(int member) {
+        if (member >= 0) {
+            if (recorder != null) recorder.join(ticks, member);
+            int spawn = nextSpawn++;
+            // คิว input ถูกสร้างไว้ตั้งแต่ queueJoin (null ถ้าออกไปแล้วก่อนถึง tick นี้ ซึ่งจะถูกลบในรายการถัดไป)
+            players.add(member, PADDING + (spawn * 40), PADDING + (spawn * 40), pendingInputs.get(member));
+        } else {
+            if (recorder != null) recorder.leave(ticks, ~member);
+            players.remove(~member);
+        }
+    }
+
+    /**
+     * hash ของสถานะผู้เล่นทั้งหมด (เรียงตาม id) ใช้ตรวจว่า MatchReplay จำลองได้ตรงกับแมตช์จริง
+     */
+    long stateHash() {
+        long hash = remainingSeconds;
+        for (int k = 0; k < players.count(); k++) {
+            int slot = players.slotAt(k);
+            hash = hash * 31 + players.id[slot];
+            hash = hash * 31 + players.x[slot];
+            hash = hash * 31 + players.y[slot];
+            hash = hash * 31 + players.score[slot];
+            hash = hash * 31 + (players.isTagger(slot) ? 1 : 0);
+            hash = hash * 31 + players.lastInputSeq[slot];
+        }
+        return hash;
+    }
+
+    int ticks() {
+        return ticks;
+    }
+
+    int winner() {
+        return winner;
+    }
+
+    /**
+     * สถานะที่ tick ล่าสุดเผยแพร่ไว้ (ผู้เล่นเรียงตาม id) อ่านจาก thread ไหนก็ได้โดยไม่ล็อก ห้ามแก้ไข
+     */
+    PlayerHandler.GameState snapshot() {
+        return published.get();
+    }
+
+    private void countdown() {
+        remainingSeconds--;
+        if (remainingSeconds <= 0) {
+            System.out.println("[" + name + "] Game Over");
+            int best = -1;
+            int bestId = -1;
+            boolean tie = false;
+            for (int k = 0; k < players.count(); k++) {
+                int slot = players.slotAt(k);
+                if (players.score[slot] > best) {
+                    best = players.score[slot];
+                    bestId = players.id[slot];
+                    tie = false;
+                } else if (players.score[slot] == best) {
+                    tie = true;
+                    bestId = -1;
+                }
+            }
+            winner = tie ? -1 : bestId;
+            gameOver = true;
+            System.out.println("[" + name + "] " + winner + " wins!");
+        }
+    }
+
+    private void broadcastPlayer() {
+        long start = System.nanoTime();
+        // สำเนาของผู้เล่น (เรียงตาม id อยู่แล้ว) ไม่ถูกแก้อีกหลังจากนี้ ใช้ร่วมกันได้ทั้ง encode, baseline และผู้อ่านภายนอก
+        ArrayList<PlayerHandler.Player> snap = new ArrayList<>(players.count());
+        for (int k = 0; k < players.count(); k++) {
+            snap.add(players.toPlayer(players.slotAt(k)));
+        }
+        PlayerHandler.GameState gs = new PlayerHandler.GameState(
+                snap,
+                null,
+                remainingSeconds,
+                gameOver,
+                winner,
+                gameStarted
+        );
+        gs.seq = ++snapshotSeq;
+        published.set(gs);
+        if (interest != null) interest.update(snap);
+
+        // client ที่ ack baseline เดียวกันได้ delta เดียวกัน จึงเข้ารหัสครั้งเดียวต่อ baseline
+        // และส่ง frame object เดียวกัน (NioTransport เขียน payload จาก direct buffer เดียวกันโดยไม่คัดลอก)
+        // ยกเว้นเมื่อเปิด area of interest ซึ่งแต่ละ client เห็นผู้เล่นไม่เหมือนกัน
+        OutboundQueue.Frame keyframe = null;
+        Map<Integer, OutboundQueue.Frame> deltas = new HashMap<>();
+
+        // sendFrame แค่ใส่ frame ลงคิวขาออกของแต่ละ client (OutboundQueue) ไม่รอ socket
+        // client ที่เน็ตช้าจึงไม่ถ่วง tick และ client คนอื่น
+        // (session ที่เข้า/ออกระหว่างวนอาจได้หรือไม่ได้ snapshot รอบนี้ก็ได้ ไม่มีผลกับ simulation)
+        for (PlayerHandler.ClientSession ch : sessions.values()) {
+            streamChunks(ch);
+
+            PlayerHandler.GameState view = (interest == null) ? gs : interest.viewFor(ch, gs);
+            PlayerHandler.GameState baseline = baselineFor(ch, gs.seq);
+            ch.sentHistory[gs.seq % ch.sentHistory.length] = view;
+            OutboundQueue.Frame frame;
+            if (view != gs) {
+                frame = snapshotFrame(view, baseline);
+                if (baseline == null) ch.lastKeyframeSeq = gs.seq;
+            } else if (baseline == null) {
+                if (keyframe == null) keyframe = snapshotFrame(gs, null);
+                frame = keyframe;
+                ch.lastKeyframeSeq = gs.seq;
+            } else {
+                frame = deltas.computeIfAbsent(baseline.seq, seq -> snapshotFrame(gs, baseline));
+            }
+            // snapshot ที่จบเกมต้องถึงแน่นอน จึงไม่ส่งทาง UDP
+            ch.sendSnapshot(frame, gs.gameover);
+        }
+        Server.recordBroadcast(System.nanoTime() - start);
+    }
+
+    /**
+     * ส่ง chunk ของสิ่งกีดขวางรอบกล้องของ client นี้ที่ยังไม่มี และสั่งทิ้ง chunk ที่ห่างออกไปแล้ว
+     * กล้องคำนวณแบบเดียวกับ ClientGame (WorldChunks.cameraOrigin) จากตำแหน่งจริงของผู้เล่น
+     * โหลดเมื่อ chunk อยู่ห่างจากจอไม่เกินหนึ่ง chunk แต่ทิ้งเมื่อห่างเกินสอง (hysteresis)
+     */
+    private void streamChunks(PlayerHandler.ClientSession ch) {
+        WorldChunks chunks = world;
+        if (!ch.worldSent) {
+            ch.connection.sendFrame(WireProtocol.MSG_WORLD, WireProtocol.encodeWorld(chunks.width, chunks.height, chunks.size));
+            ch.loadedChunks.clear();
+            ch.worldSent = true;
+        }
+        int slot = players.slotOf(ch.playerId);
+        if (slot < 0) return;
+        int camX = WorldChunks.cameraOrigin(players.x[slot], Server.VIEW_WIDTH, chunks.width);
+        int camY = WorldChunks.cameraOrigin(players.y[slot], Server.VIEW_HEIGHT, chunks.height);
+
+        int keepX0 = WorldChunks.firstChunk(camX, chunks.size, 2);
+        int keepX1 = WorldChunks.lastChunk(camX, Server.VIEW_WIDTH, chunks.size, 2);
+        int keepY0 = WorldChunks.firstChunk(camY, chunks.size, 2);
+        int keepY1 = WorldChunks.lastChunk(camY, Server.VIEW_HEIGHT, chunks.size, 2);
+        for (Iterator<Long> it = ch.loadedChunks.iterator(); it.hasNext(); ) {
+            long key = it.next();
+            int cx = WorldChunks.keyX(key);
+            int cy = WorldChunks.keyY(key);
+            if (cx < keepX0 || cx > keepX1 || cy < keepY0 || cy > keepY1) {
+                it.remove();
+                if (chunks.frame(cx, cy) != null) {
+                    ch.connection.sendFrame(WireProtocol.MSG_CHUNK_DROP, WireProtocol.encodeChunkDrop(cx, cy));
+                }
+            }
+        }
+
+        int x0 = Math.max(0, WorldChunks.firstChunk(camX, chunks.size, 1));
+        int x1 = Math.min(chunks.cols() - 1, WorldChunks.lastChunk(camX, Server.VIEW_WIDTH, chunks.size, 1));
+        int y0 = Math.max(0, WorldChunks.firstChunk(camY, chunks.size, 1));
+        int y1 = Math.min(chunks.rows() - 1, WorldChunks.lastChunk(camY, Server.VIEW_HEIGHT, chunks.size, 1));
+        int sent = 0;
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                if (!ch.loadedChunks.add(WorldChunks.key(cx, cy))) continue;
+                OutboundQueue.Frame frame = chunks.frame(cx, cy);
+                if (frame == null) continue;
+                ch.connection.send(frame);
+                if (++sent == MAX_CHUNKS_PER_TICK) return;
+            }
+        }
+    }
+
+    private static OutboundQueue.Frame snapshotFrame(PlayerHandler.GameState gs, PlayerHandler.GameState baseline) {
+        return new OutboundQueue.Frame(WireProtocol.MSG_SNAPSHOT, WireProtocol.encodeSnapshot(gs, baseline));
+    }
+
+    /**
+     * หา baseline สำหรับ delta ของ client นี้
+     * คืนค่า null (= ต้องส่ง keyframe) ถ้ายังไม่เคย ack, ack เก่าเกินไป หรือถึงรอบ keyframe
+     */
+    private PlayerHandler.GameState baselineFor(PlayerHandler.ClientSession ch, int seq) {
+        int acked = ch.getAckedSeq();
+        if (acked == WireProtocol.NO_BASELINE) return null;
+        if (seq - ch.lastKeyframeSeq >= Server.keyframeInterval) return null;
+        if (seq - acked >= ch.sentHistory.length) return null;
+        PlayerHandler.GameState base = ch.sentHistory[acked % ch.sentHistory.length];
+        return (base != null && base.seq == acked) ? base : null;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public boolean isGameStarted() {
+        return gameStarted;
+    }
+}
\ No newline at end of file
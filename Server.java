@@ -1,67 +1,101 @@
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * คลาส Server
+ *
+ * รับการเชื่อมต่อผ่าน Transport แล้วส่งผู้เล่นเข้าห้อง (Room) ตามคำขอ OP_JOIN / OP_CREATE
+ * หนึ่ง process รันได้หลายห้องพร้อมกัน โดยทุกห้องใช้ scheduler ชุดเดียวกัน
  */
 public class Server {
 
     public static int port = 8080;
 
-    public static final int MAP_WIDTH = 1000;
-    public static final int MAP_HEIGHT = 600;
+    // จำนวน tick ต่อวินาทีของ game loop (ตั้งได้จาก args[1] หรือ -Dtag.tickRate)
+    public static final int DEFAULT_TICK_RATE = 30;
+    public static int tickRate = Integer.getInteger("tag.tickRate", DEFAULT_TICK_RATE);
+
+    // transport ที่ใช้รับการเชื่อมต่อ ("blocking" หรือ "nio") ตั้งได้จาก args[2] หรือ -Dtag.transport
+    public static String transportName = System.getProperty("tag.transport", "blocking");
 
-    private static final Map<Integer, PlayerHandler.Player> players = Collections.synchronizedMap(new HashMap<>());
-    private static final Map<Integer, PlayerHandler.ClientHandler> handlers = Collections.synchronizedMap(new HashMap<>());
+    // ให้ game loop และ ClientHandler ของ BlockingTransport รันบน virtual thread (args[3] หรือ -Dtag.virtualThreads)
+    public static boolean virtualThreads = Boolean.getBoolean("tag.virtualThreads");
 
-    private static final List<Obstacle> obstacles = Collections.synchronizedList(new ArrayList<>());
-    private static final int NUM_OBSTACLES = 15;
-    private static final int MIN_OBSTACLE_DISTANCE = 25;
+    // ส่ง keyframe (ผู้เล่นครบทุกคน) ให้แต่ละ client อย่างน้อยทุกๆ กี่ tick
+    public static int keyframeInterval = Integer.getInteger("tag.keyframeTicks", DEFAULT_TICK_RATE);
 
-    private static final int NUM_OBSTACLE_TYPES = 3;
+    // จำนวนผู้เล่นสูงสุดที่ quick match จะส่งเข้าห้องเดียวกัน (การ join ด้วยชื่อห้องไม่จำกัด)
+    public static int roomCapacity = Integer.getInteger("tag.roomCapacity", 8);
 
-    private static final int[][] OBSTACLE_TYPE_SIZES = {
-            {125, 125}, // type 0 (หิน)
-            {100, 100}, // type 1 (กล่องไม้)
-            {60, 60}  // type 2 (พุ่มไม้)
-    };
+    // จำนวน thread ของ scheduler ที่ทุกห้องใช้ร่วมกัน (ค่าเริ่มต้น = จำนวน core)
+    public static int loopThreads = Integer.getInteger("tag.loopThreads", Runtime.getRuntime().availableProcessors());
 
-    private static final int PLAYER_SPEED = 5;
-    private static final int GAME_DURATION_SECONDS = 60;
+    // เปิดช่องทาง UDP สำหรับ snapshot / input (port เดียวกับ TCP) ให้ client ที่ขอด้วย OP_UDP
+    public static boolean udp = Boolean.getBoolean("tag.udp");
 
-    // (ใช้ PlayerHandler.PLAYER_SIZE ที่ถูกต้อง)
-    private static final int PADDING = PlayerHandler.PLAYER_SIZE + 5;
+    // ขนาดแผนที่เริ่มต้น (เท่าหน้าจอของ ClientGame พอดี) ตั้งให้ใหญ่กว่านี้ได้ด้วย -Dtag.mapWidth / -Dtag.mapHeight
+    public static final int MAP_WIDTH = 1000;
+    public static final int MAP_HEIGHT = 600;
+    public static int mapWidth = Integer.getInteger("tag.mapWidth", MAP_WIDTH);
+    public static int mapHeight = Integer.getInteger("tag.mapHeight", MAP_HEIGHT);
+
+    // ขนาดหน้าจอของ ClientGame ใช้คำนวณว่าต้องส่ง chunk ไหนให้ client
+    public static final int VIEW_WIDTH = 1000;
+    public static final int VIEW_HEIGHT = 600;
+
+    // ทุกการเชื่อมต่อ (ทั้งที่อยู่ใน lobby และในห้องแล้ว)
+    private static final Map<Integer, PlayerHandler.ClientSession> sessions = Collections.synchronizedMap(new HashMap<>());
+
+    // ห้องที่เปิดอยู่ (ล็อก rooms ทุกครั้งที่สร้าง/เข้า/ลบห้อง)
+    private static final Map<String, Room> rooms = new LinkedHashMap<>();
+    private static int nextRoomId = 1;
+    private static ScheduledExecutorService scheduler;
+    static volatile UdpServer udpServer;
 
-    private static volatile boolean gameStarted = false;
-    private static volatile boolean gameOver = false;
-    private static volatile int remainingSeconds = GAME_DURATION_SECONDS;
-    private static int winner = -1;
     private static int nextPlayerId = 0;
 
+    // ระยะเวลาของ broadcast ล่าสุด (nanos, index = ลำดับ % ขนาด) ใช้โดย ThreadModeLoadTest
+    private static final long[] broadcastNanos = new long[1024];
+    private static long broadcastCount = 0;
+
     public Server(int port) {
         Server.port = port;
     }
 
+    public Server(int port, int tickRate) {
+        this(port);
+        Server.tickRate = tickRate;
+    }
+
+    public Server(int port, int tickRate, String transportName) {
+        this(port, tickRate);
+        Server.transportName = transportName;
+    }
+
     public void start() {
-        System.out.println("Server starting on port: " + port);
-        spawnObstacles();
-        new Thread(new GameTimer()).start();
-
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            while (true) {
-                Socket socket = serverSocket.accept();
-                System.out.println("New client connected");
-                int playerId = nextPlayerId++;
-
-                PlayerHandler.Player player = new PlayerHandler.Player(playerId, PADDING + (playerId * 40), PADDING + (playerId * 40), false);
-                players.put(playerId, player);
-
-                PlayerHandler.ClientHandler handler = new PlayerHandler.ClientHandler(socket, playerId, players, handlers, obstacles);
-                handlers.put(playerId, handler);
-                new Thread(handler).start();
+        System.out.println("Server starting on port: " + port + " (" + tickRate + " ticks/s, " + transportName + " transport, "
+                + (virtualThreads ? "virtual" : "platform") + " threads, " + loopThreads + " loop threads"
+                + (udp ? ", UDP snapshots" : "") + ")");
+        ServerMetrics.start();
+        if (udp) {
+            try {
+                UdpServer server = new UdpServer(port);
+                server.start();
+                udpServer = server;
+            } catch (IOException e) {
+                System.out.println("UDP disabled: " + e.getMessage());
             }
+        }
+        synchronized (rooms) {
+            scheduler = Executors.newScheduledThreadPool(Math.max(1, loopThreads), threadBuilder("game-loop-", 0).factory());
+        }
+
+        try {
+            Transport.create(transportName).serve(port);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -69,228 +103,241 @@ public class Server {
 
     public static void main(String[] args) {
         int p = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
-        new Server(p).start();
+        int rate = (args.length > 1) ? Integer.parseInt(args[1]) : tickRate;
+        String transport = (args.length > 2) ? args[2] : transportName;
+        if (args.length > 3) virtualThreads = args[3].equals("virtual");
+        new Server(p, rate, transport).start();
     }
 
-    public static void checkAllReady() {
-        if (gameStarted) return;
-        synchronized (players) {
-            if (players.isEmpty()) return;
-            boolean allReady = true;
-            for (PlayerHandler.Player p : players.values()) {
-                if (!p.isReady) {
-                    allReady = false;
-                    break;
-                }
-            }
-            if (allReady) {
-                System.out.println("All players are READY! Starting game...");
-                startGame();
-            }
+    /**
+     * สร้าง thread ตามโหมดที่เลือก (virtual หรือ platform)
+     */
+    static Thread.Builder threadBuilder(String name) {
+        return virtualThreads ? Thread.ofVirtual().name(name) : Thread.ofPlatform().name(name);
+    }
+
+    static Thread.Builder threadBuilder(String prefix, long start) {
+        return virtualThreads ? Thread.ofVirtual().name(prefix, start) : Thread.ofPlatform().name(prefix, start);
+    }
+
+    //------------------------transport callbacks----------------------------//
+    /**
+     * จอง id ให้กับการเชื่อมต่อที่เพิ่งเข้ามา แล้วส่ง handshake
+     * การเชื่อมต่อจะอยู่ใน lobby (ไม่ได้รับ snapshot) จนกว่า client จะส่ง OP_JOIN หรือ OP_CREATE
+     */
+    public static int onConnect(ClientConnection connection) {
+        int playerId;
+        long waitStart = System.nanoTime();
+        synchronized (sessions) {
+            ServerMetrics.SESSIONS_LOCK.record(System.nanoTime() - waitStart);
+            playerId = nextPlayerId++;
         }
+        connection.sendHandshake(playerId);
+        PlayerHandler.ClientSession session = new PlayerHandler.ClientSession(playerId, connection);
+        sessions.put(playerId, session);
+        ServerMetrics.clientConnected(session);
+        return playerId;
     }
 
-    private static void startGame() {
-        if (gameStarted) return;
-        gameStarted = true;
-        remainingSeconds = GAME_DURATION_SECONDS;
-        if (!players.isEmpty()) {
-            synchronized (players) {
-                for (PlayerHandler.Player p : players.values()) {
-                    p.score = 0;
-                    p.isTagger = false;
-                }
-                int taggerId = new Random().nextInt(players.size());
-                players.get(taggerId).isTagger = true;
-                System.out.println("Player " + taggerId + " is the new Tagger.");
-            }
+    /**
+     * รับหนึ่ง frame จาก client (ตำแหน่งแรกของ buffer คือ type)
+     * buffer อาจถูก transport นำกลับไปใช้ใหม่หลังเมธอดนี้ return จึงห้ามเก็บไว้
+     */
+    public static void onFrame(int playerId, ByteBuffer frame) {
+        PlayerHandler.ClientSession session = sessions.get(playerId);
+        if (session == null) return;
+        session.recordFrame(WireProtocol.frameBytes(frame.remaining() - 1));
+        byte type = frame.get();
+        if (type == WireProtocol.OP_ACK) {
+            session.onAck(frame.getInt());
+            return;
+        }
+        if (type == WireProtocol.OP_UDP) {
+            UdpServer udp = udpServer;
+            int udpPort = (udp == null) ? 0 : udp.port();
+            session.connection.sendFrame(WireProtocol.MSG_UDP, WireProtocol.encodeUdpOffer(udpPort, session.udpToken));
+            return;
+        }
+        if (type == WireProtocol.OP_JOIN || type == WireProtocol.OP_CREATE) {
+            String roomName = (type == WireProtocol.OP_JOIN) ? WireProtocol.decodeRoomName(frame) : null;
+            joinRoom(session, type == WireProtocol.OP_CREATE, roomName);
+            return;
+        }
+        Room room = session.room;
+        if (room == null) return;
+        if (type == WireProtocol.OP_INPUT) {
+            room.queueInput(playerId, frame.getInt(), frame.get() & 0xFF);
+        } else if (type == WireProtocol.OP_READY) {
+            room.queueReady(playerId);
         }
-        broadcastPlayer();
     }
 
-    private static void spawnObstacles() {
-        Random rand = new Random();
-        synchronized (obstacles) {
-            obstacles.clear();
-            for (int i = 0; i < NUM_OBSTACLES; i++) {
-                int type = rand.nextInt(NUM_OBSTACLE_TYPES);
-                int width = OBSTACLE_TYPE_SIZES[type][0];
-                int height = OBSTACLE_TYPE_SIZES[type][1];
-                int x, y;
-
-                int minX = PADDING;
-                int maxX = MAP_WIDTH - width - PADDING;
-                int minY = PADDING;
-                int maxY = MAP_HEIGHT - height - PADDING;
-
-                int rangeX = maxX - minX;
-                int rangeY = maxY - minY;
-
-                if (rangeX <= 0) rangeX = 1;
-                if (rangeY <= 0) rangeY = 1;
-
-                boolean overlap;
-                do {
-                    overlap = false;
-                    x = rand.nextInt(rangeX) + minX;
-                    y = rand.nextInt(rangeY) + minY;
-                    for (Obstacle other : obstacles) {
-                        if (x < other.x + other.width + MIN_OBSTACLE_DISTANCE &&
-                                x + width + MIN_OBSTACLE_DISTANCE > other.x &&
-                                y < other.y + other.height + MIN_OBSTACLE_DISTANCE &&
-                                y + height + MIN_OBSTACLE_DISTANCE > other.y) {
-                            overlap = true;
-                            break;
-                        }
-                    }
-                } while (overlap);
-                obstacles.add(new Obstacle(x, y, width, height, type));
+    /**
+     * รับหนึ่ง datagram จาก UdpServer (ตำแหน่งแรกของ buffer คือ type)
+     * datagram ที่ token ไม่ตรงกับ session ถูกทิ้ง ส่วนที่ตรงจะอัปเดต address ที่ใช้ส่ง snapshot กลับ
+     * input ที่ส่งซ้ำมา (seq ไม่ใหม่กว่าที่รับไปแล้ว) ถูกทิ้งก่อนเข้าคิวของห้อง
+     */
+    static void onDatagram(SocketAddress from, ByteBuffer datagram) {
+        int bytes = datagram.remaining();
+        byte type = datagram.get();
+        PlayerHandler.ClientSession session = sessions.get(datagram.getInt());
+        if (session == null || datagram.getInt() != session.udpToken) return;
+        session.recordFrame(bytes);
+        if (!from.equals(session.udpAddress)) session.udpAddress = from;
+        if (type == WireProtocol.OP_ACK) {
+            session.onAck(datagram.getInt());
+            return;
+        }
+        Room room = session.room;
+        if (type != WireProtocol.OP_INPUT || room == null) return;
+        int count = datagram.get() & 0xFF;
+        for (int i = 0; i < count && datagram.remaining() >= WireProtocol.INPUT_BYTES; i++) {
+            int seq = datagram.getInt();
+            int buttons = datagram.get() & 0xFF;
+            if (seq > session.udpInputSeq) {
+                session.udpInputSeq = seq;
+                room.queueInput(session.playerId, seq, buttons);
             }
         }
-        System.out.println("Spawned " + obstacles.size() + " obstacles.");
     }
 
-
-    // --- ★★★ 1. แก้ไข movePlayer ให้เรียกใช้เมธอดใหม่ ★★★ ---
-    public static void movePlayer(int playerId, String cmd) {
-        synchronized (players) {
-            PlayerHandler.Player player = players.get(playerId);
-            if (player == null) return;
-
-            int newX = player.x;
-            int newY = player.y;
-
-            switch (cmd) {
-                case "UP": newY -= PLAYER_SPEED; break;
-                case "DOWN": newY += PLAYER_SPEED; break;
-                case "LEFT": newX -= PLAYER_SPEED; break;
-                case "RIGHT": newX += PLAYER_SPEED; break;
+    /**
+     * ลบผู้เล่นออกจากห้อง (เรียกเมื่อ client หลุดการเชื่อมต่อ) ห้องที่ว่างแล้วจะถูกปิด
+     */
+    public static void onDisconnect(int playerId) {
+        PlayerHandler.ClientSession session = sessions.remove(playerId);
+        if (session == null) return;
+        ServerMetrics.clientDisconnected(session);
+        if (session.room == null) return;
+        long waitStart = System.nanoTime();
+        synchronized (rooms) {
+            ServerMetrics.ROOMS_LOCK.record(System.nanoTime() - waitStart);
+            Room room = session.room;
+            room.leave(playerId);
+            if (room.size() == 0 && rooms.remove(room.name) != null) {
+                room.stop();
+                System.out.println("Room " + room.name + " closed");
             }
-
-            // (ลบโค้ดตรวจสอบการชนเก่าทั้งหมด)
-            // เรียกใช้เมธอด helper ใหม่
-            trySetPlayerPosition(player, newX, newY);
         }
     }
 
-    // --- ★★★ 2. เพิ่มเมธอด trySetPlayerPosition (เมธอดใหม่) ★★★ ---
+    //------------------------lobby----------------------------//
     /**
-     * พยายามย้ายผู้เล่นไปยังพิกัดใหม่ (newX, newY)
-     * เมธอดนี้จะตรวจสอบขอบเขตแผนที่และสิ่งกีดขวางทั้งหมด
-     * ถ้าการย้ายนั้น hợp lệ (ไม่ชน) ก็จะอัปเดตตำแหน่งผู้เล่น
-     *
-     * @param player ผู้เล่นที่จะย้าย
-     * @param newX   พิกัด X เป้าหมาย
-     * @param newY   พิกัด Y เป้าหมาย
-     * @return true หากย้ายสำเร็จ, false หากถูกบล็อก (ชน)
+     * ส่ง session เข้าห้อง
+     * create = สร้างห้องใหม่เสมอ, roomName ว่าง = quick match (ห้องที่ยังเปิดอยู่ หรือห้องใหม่)
+     * นอกนั้น = เข้าห้องตามชื่อ ถ้ายังไม่มีจะสร้างใหม่ ถ้ามีแต่เริ่มแมตช์แล้ว/จบแล้ว/เต็มจะถูกปฏิเสธ
+     * (ห้องไม่เริ่มใหม่ ผู้เล่นที่เข้าไปจะค้างอยู่ในแมตช์ที่จบแล้ว)
      */
-    public static boolean trySetPlayerPosition(PlayerHandler.Player player, int newX, int newY) {
-
-        // 1. ตรวจสอบขอบเขตแผนที่ (Clamping)
-        int clampedX = newX;
-        int clampedY = newY;
-        if (clampedX < 0) clampedX = 0;
-        if (clampedX + PlayerHandler.PLAYER_SIZE > MAP_WIDTH) clampedX = MAP_WIDTH - PlayerHandler.PLAYER_SIZE;
-        if (clampedY < 0) clampedY = 0;
-        if (clampedY + PlayerHandler.PLAYER_SIZE > MAP_HEIGHT) clampedY = MAP_HEIGHT - PlayerHandler.PLAYER_SIZE;
-
-        // 2. ตรวจสอบการชนสิ่งกีดขวาง (AABB) ด้วยพิกัดที่ *clamped* แล้ว
-        boolean collision = false;
-        synchronized (obstacles) {
-            for (Obstacle rect : obstacles) {
-                if (clampedX < rect.x + rect.width &&
-                        clampedX + PlayerHandler.PLAYER_SIZE > rect.x &&
-                        clampedY < rect.y + rect.height &&
-                        clampedY + PlayerHandler.PLAYER_SIZE > rect.y) {
-
-                    collision = true;
-                    break;
+    private static void joinRoom(PlayerHandler.ClientSession session, boolean create, String roomName) {
+        long waitStart = System.nanoTime();
+        synchronized (rooms) {
+            ServerMetrics.ROOMS_LOCK.record(System.nanoTime() - waitStart);
+            if (session.room != null || scheduler == null) {
+                session.connection.sendFrame(WireProtocol.MSG_ROOM, WireProtocol.encodeRoom(WireProtocol.ROOM_REJECTED, "", tickRate));
+                return;
+            }
+            Room room = null;
+            if (create) {
+                room = openRoom(null);
+            } else if (roomName.isEmpty()) {
+                for (Room r : rooms.values()) {
+                    if (r.isOpen(roomCapacity)) {
+                        room = r;
+                        break;
+                    }
+                }
+                if (room == null) room = openRoom(null);
+            } else {
+                room = rooms.get(roomName);
+                if (room == null) {
+                    room = openRoom(roomName);
+                } else if (!room.isOpen(roomCapacity)) {
+                    session.connection.sendFrame(WireProtocol.MSG_ROOM, WireProtocol.encodeRoom(WireProtocol.ROOM_REJECTED, roomName, tickRate));
+                    return;
                 }
             }
+            session.room = room;
+            // ตอบกลับก่อน join เพื่อให้ MSG_ROOM ถึง client ก่อน snapshot แรกของห้อง
+            session.connection.sendFrame(WireProtocol.MSG_ROOM, WireProtocol.encodeRoom(WireProtocol.ROOM_OK, room.name, tickRate));
+            room.join(session);
+            System.out.println("Player " + session.playerId + " joined room " + room.name + " (" + room.size() + " players)");
         }
+    }
 
-        // 3. ถ้าไม่ชน ถึงจะอัปเดตตำแหน่ง
-        if (!collision) {
-            player.x = clampedX;
-            player.y = clampedY;
-            return true; // ย้ายสำเร็จ
-        } else {
-            // ถ้าชนขอบเขต หรือ ชนสิ่งกีดขวาง
-            // เราอาจจะลองย้ายแค่แกน X หรือ Y (Slide)
-            // แต่เพื่อความง่าย เราจะ "ไม่อนุญาต" ให้ย้ายเลย
-            return false; // ย้ายไม่สำเร็จ (ถูกบล็อก)
+    // ต้องถือ lock ของ rooms
+    private static Room openRoom(String name) {
+        if (name == null) {
+            do {
+                name = "room-" + nextRoomId++;
+            } while (rooms.containsKey(name));
         }
+        Room room = new Room(name);
+        rooms.put(name, room);
+        room.start(scheduler, tickRate);
+        System.out.println("Room " + name + " opened (" + rooms.size() + " rooms)");
+        return room;
     }
-    // --- สิ้นสุดการเพิ่มเมธอดใหม่ ---
 
+    public static int roomCount() {
+        synchronized (rooms) {
+            return rooms.size();
+        }
+    }
 
-    static class GameTimer implements Runnable {
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+    //------------------------stats----------------------------//
+    static void recordBroadcast(long nanos) {
+        ServerMetrics.BROADCAST.record(nanos);
+        synchronized (broadcastNanos) {
+            broadcastNanos[(int) (broadcastCount++ % broadcastNanos.length)] = nanos;
+        }
+    }
 
-                if (gameStarted && !gameOver) {
-                    remainingSeconds--;
-                    broadcastPlayer();
-
-                    if (remainingSeconds <= 0) {
-                        System.out.println("Game Over");
-                        int best = -1;
-                        int bestId = -1;
-                        boolean tie = false;
-                        for (PlayerHandler.Player player : players.values()) {
-                            if (player.score > best) {
-                                best = player.score;
-                                bestId = player.id;
-                                tie = false;
-                            } else if (player.score == best) {
-                                tie = true;
-                                bestId = -1;
-                            }
-                        }
-                        winner = tie ? -1 : bestId;
-                        gameOver = true;
-                        System.out.println(winner + " wins!");
-                        broadcastPlayer();
-                    }
-                }
+    /**
+     * ระยะเวลาของ broadcast ล่าสุด (สูงสุด 1024 ครั้ง รวมทุกห้อง เรียงจากเก่าไปใหม่) หน่วย nanos
+     */
+    public static long[] recentBroadcastNanos() {
+        synchronized (broadcastNanos) {
+            int n = (int) Math.min(broadcastCount, broadcastNanos.length);
+            long[] result = new long[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = broadcastNanos[(int) ((broadcastCount - n + i) % broadcastNanos.length)];
             }
+            return result;
         }
     }
 
-    public static void broadcastPlayer() {
-        ArrayList<PlayerHandler.Player> snap;
-        synchronized (players) {
-            snap = new ArrayList<>(players.values());
-        }
-        PlayerHandler.GameState gs = new PlayerHandler.GameState(
-                snap,
-                new ArrayList<>(obstacles),
-                remainingSeconds,
-                gameOver,
-                winner,
-                gameStarted
-        );
-        synchronized (handlers) {
-            for (Map.Entry<Integer, PlayerHandler.ClientHandler> entry : handlers.entrySet()) {
-                PlayerHandler.ClientHandler ch = entry.getValue();
-                if (ch != null) {
-                    ch.sendGameState(gs);
-                }
-            }
+    /**
+     * ทุกการเชื่อมต่อในขณะนี้ (สำเนา) ใช้โดย ServerMetrics
+     */
+    static PlayerHandler.ClientSession[] sessionsSnapshot() {
+        synchronized (sessions) {
+            return sessions.values().toArray(new PlayerHandler.ClientSession[0]);
         }
     }
 
-    public static boolean isGameOver() {
-        return gameOver;
+    /**
+     * ความลึกสูงสุดของคิวขาออกในบรรดา client ที่เชื่อมต่ออยู่
+     */
+    public static int maxOutboundDepth() {
+        int max = 0;
+        synchronized (sessions) {
+            for (PlayerHandler.ClientSession session : sessions.values()) {
+                max = Math.max(max, session.connection.outbound().depth());
+            }
+        }
+        return max;
     }
 
-    public static boolean isGameStarted() {
-        return gameStarted;
+    /**
+     * จำนวน snapshot ที่ถูกแทนที่ก่อนได้ส่ง รวมทุก client ที่เชื่อมต่ออยู่
+     */
+    public static long droppedSnapshots() {
+        long total = 0;
+        synchronized (sessions) {
+            for (PlayerHandler.ClientSession session : sessions.values()) {
+                total += session.connection.outbound().droppedSnapshots();
+            }
+        }
+        return total;
     }
 }
\ No newline at end of file
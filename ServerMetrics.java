@@ -0,0 +1,225 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * ตัวชี้วัดขณะรันของ server
+ *
+ * เก็บ histogram ของเวลา tick, เวลา broadcast และเวลารอ lock (sessions / rooms)
+ * (ผู้เล่นของห้องไม่มี lock แล้ว ดู Room)
+ * ส่วนตัวเลขต่อ client (ไบต์เข้า/ออก, จำนวนคำสั่ง, ความลึกของคิวขาออก) อ่านจาก ClientSession ตอนถูกขอ
+ * การบันทึกแต่ละครั้งไม่จองหน่วยความจำ (ดู LatencyHistogram) จึงเปิดไว้ตลอด
+ *
+ * อ่านได้สองทาง
+ *  - JMX: tag:type=Server และ tag:type=Client,id=<playerId> (เช่น jconsole / VisualVM)
+ *  - HTTP: GET http://127.0.0.1:<tag.metricsPort>/metrics ในรูปแบบ text ของ Prometheus
+ *    (ปิดไว้ถ้าไม่ได้ตั้ง -Dtag.metricsPort ฟังเฉพาะ loopback)
+ */
+public final class ServerMetrics {
+
+    public static final LatencyHistogram TICK = new LatencyHistogram();
+    public static final LatencyHistogram BROADCAST = new LatencyHistogram();
+    public static final LatencyHistogram SESSIONS_LOCK = new LatencyHistogram();
+    public static final LatencyHistogram ROOMS_LOCK = new LatencyHistogram();
+
+    public static int httpPort = Integer.getInteger("tag.metricsPort", 0);
+
+    private static final String SERVER_NAME = "tag:type=Server";
+    private static boolean started = false;
+
+    private ServerMetrics() {}
+
+    /**
+     * ลงทะเบียน MBean ของ server และเปิด HTTP endpoint (ถ้าตั้ง port ไว้) เรียกครั้งเดียวตอน Server.start()
+     */
+    static synchronized void start() {
+        if (started) return;
+        started = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ServerStats(), new ObjectName(SERVER_NAME));
+        } catch (JMException e) {
+            System.out.println("Metrics: JMX registration failed: " + e.getMessage());
+        }
+        if (httpPort > 0) {
+            try {
+                HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), httpPort), 0);
+                http.createContext("/metrics", exchange -> {
+                    byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                http.start();
+                System.out.println("Metrics on http://127.0.0.1:" + httpPort + "/metrics");
+            } catch (IOException e) {
+                System.out.println("Metrics: HTTP endpoint failed: " + e.getMessage());
+            }
+        }
+    }
+
+    static void clientConnected(PlayerHandler.ClientSession session) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ClientStats(session), clientName(session.playerId));
+        } catch (JMException e) {
+            // ไม่ให้ปัญหาของ metrics ทำให้ client เข้าเกมไม่ได้
+        }
+    }
+
+    static void clientDisconnected(PlayerHandler.ClientSession session) {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = clientName(session.playerId);
+            if (mbs.isRegistered(name)) mbs.unregisterMBean(name);
+        } catch (JMException ignored) {
+        }
+    }
+
+    private static ObjectName clientName(int playerId) throws JMException {
+        return new ObjectName("tag:type=Client,id=" + playerId);
+    }
+
+    //------------------------prometheus----------------------------//
+    /**
+     * ตัวชี้วัดทั้งหมดในรูปแบบ text exposition ของ Prometheus
+     */
+    static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        PlayerHandler.ClientSession[] clients = Server.sessionsSnapshot();
+
+        gauge(out, "tag_connected_clients", "Connected clients (lobby and rooms)", clients.length);
+        gauge(out, "tag_rooms", "Open rooms", Server.roomCount());
+        counter(out, "tag_laggard_disconnects_total", "Clients disconnected for falling behind", OutboundQueue.laggardDisconnects());
+
+        histogram(out, "tag_tick_seconds", "Room tick duration", TICK);
+        histogram(out, "tag_broadcast_seconds", "Room snapshot broadcast duration", BROADCAST);
+        out.append("# HELP tag_lock_wait_seconds Time spent waiting to enter a monitor\n");
+        out.append("# TYPE tag_lock_wait_seconds histogram\n");
+        SESSIONS_LOCK.writePrometheus(out, "tag_lock_wait_seconds", "lock=\"sessions\"");
+        ROOMS_LOCK.writePrometheus(out, "tag_lock_wait_seconds", "lock=\"rooms\"");
+
+        header(out, "tag_client_bytes_in_total", "counter", "Bytes received from the client");
+        for (PlayerHandler.ClientSession s : clients) sample(out, "tag_client_bytes_in_total", s, s.getBytesIn());
+        header(out, "tag_client_bytes_out_total", "counter", "Bytes handed to the socket for the client (TCP and UDP)");
+        for (PlayerHandler.ClientSession s : clients) sample(out, "tag_client_bytes_out_total", s, bytesOut(s));
+        header(out, "tag_client_commands_total", "counter", "Frames received from the client");
+        for (PlayerHandler.ClientSession s : clients) sample(out, "tag_client_commands_total", s, s.getCommands());
+        header(out, "tag_client_send_queue_depth", "gauge", "Frames waiting in the client's outbound queue");
+        for (PlayerHandler.ClientSession s : clients) sample(out, "tag_client_send_queue_depth", s, s.connection.outbound().depth());
+        header(out, "tag_client_dropped_snapshots_total", "counter", "Snapshots replaced before they were sent");
+        for (PlayerHandler.ClientSession s : clients) sample(out, "tag_client_dropped_snapshots_total", s, s.connection.outbound().droppedSnapshots());
+        return out.toString();
+    }
+
+    private static long bytesOut(PlayerHandler.ClientSession s) {
+        return s.connection.outbound().sentBytes() + s.getUdpBytesOut();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String help, LatencyHistogram h) {
+        header(out, name, "histogram", help);
+        h.writePrometheus(out, name, "");
+    }
+
+    private static void sample(StringBuilder out, String name, PlayerHandler.ClientSession s, long value) {
+        Room room = s.room;
+        out.append(name).append("{client=\"").append(s.playerId).append("\",room=\"")
+                .append(room == null ? "" : escape(room.name)).append("\"} ").append(value).append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    //------------------------JMX----------------------------//
+    public interface ServerStatsMXBean {
+        int getConnectedClients();
+        int getRooms();
+        long getTickCount();
+        double getTickP50Micros();
+        double getTickP99Micros();
+        double getBroadcastP50Micros();
+        double getBroadcastP99Micros();
+        double getSessionsLockWaitP99Micros();
+        double getRoomsLockWaitP99Micros();
+        int getMaxSendQueueDepth();
+        long getDroppedSnapshots();
+        long getLaggardDisconnects();
+    }
+
+    public interface ClientStatsMXBean {
+        String getRoom();
+        long getBytesIn();
+        long getBytesOut();
+        long getCommands();
+        double getCommandsPerSecond();
+        int getSendQueueDepth();
+        long getDroppedSnapshots();
+    }
+
+    private static final class ServerStats implements ServerStatsMXBean {
+        @Override public int getConnectedClients() { return Server.sessionsSnapshot().length; }
+        @Override public int getRooms() { return Server.roomCount(); }
+        @Override public long getTickCount() { return TICK.count(); }
+        @Override public double getTickP50Micros() { return TICK.percentileNanos(0.50) / 1000.0; }
+        @Override public double getTickP99Micros() { return TICK.percentileNanos(0.99) / 1000.0; }
+        @Override public double getBroadcastP50Micros() { return BROADCAST.percentileNanos(0.50) / 1000.0; }
+        @Override public double getBroadcastP99Micros() { return BROADCAST.percentileNanos(0.99) / 1000.0; }
+        @Override public double getSessionsLockWaitP99Micros() { return SESSIONS_LOCK.percentileNanos(0.99) / 1000.0; }
+        @Override public double getRoomsLockWaitP99Micros() { return ROOMS_LOCK.percentileNanos(0.99) / 1000.0; }
+        @Override public int getMaxSendQueueDepth() { return Server.maxOutboundDepth(); }
+        @Override public long getDroppedSnapshots() { return Server.droppedSnapshots(); }
+        @Override public long getLaggardDisconnects() { return OutboundQueue.laggardDisconnects(); }
+    }
+
+    private static final class ClientStats implements ClientStatsMXBean {
+        private final PlayerHandler.ClientSession session;
+
+        ClientStats(PlayerHandler.ClientSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public String getRoom() {
+            Room room = session.room;
+            return room == null ? "" : room.name;
+        }
+
+        @Override public long getBytesIn() { return session.getBytesIn(); }
+        @Override public long getBytesOut() { return bytesOut(session); }
+        @Override public long getCommands() { return session.getCommands(); }
+
+        // เฉลี่ยตั้งแต่เชื่อมต่อ (อัตราช่วงสั้นๆ ให้คำนวณจาก tag_client_commands_total ฝั่ง Prometheus)
+        @Override
+        public double getCommandsPerSecond() {
+            double seconds = (System.nanoTime() - session.connectedNanos) / 1e9;
+            return seconds > 0 ? session.getCommands() / seconds : 0;
+        }
+
+        @Override public int getSendQueueDepth() { return session.connection.outbound().depth(); }
+        @Override public long getDroppedSnapshots() { return session.connection.outbound().droppedSnapshots(); }
+    }
+}
\ No newline at end of file
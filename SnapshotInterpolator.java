@@ -0,0 +1,137 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * บัฟเฟอร์ snapshot ฝั่ง client สำหรับวาดผู้เล่นคนอื่นแบบ interpolation
+ *
+ * snapshot แต่ละอันถูกประทับเวลาตอนที่ได้รับ แล้ววาดย้อนหลัง delayMs (ค่าเริ่มต้น 100 ms)
+ * โดยเฉลี่ยตำแหน่งระหว่าง snapshot สองอันที่คร่อมเวลานั้น ผู้เล่นจึงขยับลื่นตามอัตราการวาดหน้าจอ
+ * ไม่กระตุกตามจังหวะที่ packet มาถึง
+ *
+ * ถ้า snapshot ขาดช่วงจนเวลาที่วาดเลย snapshot ล่าสุด จะ extrapolate ต่อจากความเร็วของ
+ * สองอันล่าสุดได้ไม่เกิน MAX_EXTRAPOLATION_MS แล้วหยุดรอ
+ *
+ * delayMs ควรมากกว่าระยะห่างระหว่าง snapshot ประมาณสองเท่า ถ้าลดอัตราส่ง snapshot ของ server
+ * ให้เพิ่ม -Dtag.interpolationDelayMs ตาม
+ */
+public final class SnapshotInterpolator {
+
+    static final int BUFFER_SIZE = 32;
+    static final int MAX_EXTRAPOLATION_MS = 100;
+    // ขยับเกินระยะนี้ระหว่างสอง snapshot (px) ถือว่าวาร์ป ไม่ interpolate
+    static final int SNAP_DISTANCE = 90;
+
+    public static int delayMs = Integer.getInteger("tag.interpolationDelayMs", 100);
+
+    /**
+     * ผลลัพธ์ของ sample() ผู้เรียกสร้างไว้ครั้งเดียวแล้วใช้ซ้ำทุกเฟรม
+     * (array ขยายเฉพาะตอนจำนวนผู้เล่นเพิ่ม เฟรมปกติจึงไม่จองหน่วยความจำ)
+     */
+    public static final class View {
+        public int count;
+        public int[] id = new int[8];
+        public int[] x = new int[8];
+        public int[] y = new int[8];
+        public int[] score = new int[8];
+        public boolean[] tagger = new boolean[8];
+        public String[] name = new String[8];
+
+        void ensureCapacity(int n) {
+            if (id.length >= n) return;
+            int cap = Math.max(n, id.length * 2);
+            id = Arrays.copyOf(id, cap);
+            x = Arrays.copyOf(x, cap);
+            y = Arrays.copyOf(y, cap);
+            score = Arrays.copyOf(score, cap);
+            tagger = Arrays.copyOf(tagger, cap);
+            name = Arrays.copyOf(name, cap);
+        }
+    }
+
+    // ring buffer (index = ลำดับที่ได้รับ % BUFFER_SIZE)
+    private final long[] times = new long[BUFFER_SIZE];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<PlayerHandler.Player>[] states = new List[BUFFER_SIZE];
+    private int newest = -1;
+    private int count = 0;
+
+    /**
+     * เก็บตำแหน่งผู้เล่นจาก snapshot ที่เพิ่งได้รับ (list ต้องไม่ถูกแก้ไขภายหลัง)
+     * ผู้เล่นต้องเรียงตาม id เหมือนที่ server ส่งมา blend() จึงจับคู่สอง snapshot ได้ในรอบเดียว
+     */
+    public synchronized void add(List<PlayerHandler.Player> players, long receivedNanos) {
+        // เวลาต้องไม่ถอยหลัง ไม่อย่างนั้นการค้นหาช่วงจะผิด
+        if (count > 0 && receivedNanos < times[newest]) receivedNanos = times[newest];
+        newest = (newest + 1) % BUFFER_SIZE;
+        times[newest] = receivedNanos;
+        states[newest] = players;
+        if (count < BUFFER_SIZE) count++;
+    }
+
+    /**
+     * เขียนตำแหน่งผู้เล่นทุกคน ณ เวลา nowNanos - delayMs ลงใน out
+     * ข้อมูลอื่น (คะแนน, tagger) มาจาก snapshot ฝั่งหลังของช่วง
+     */
+    public synchronized void sample(long nowNanos, View out) {
+        if (count == 0) {
+            out.count = 0;
+            return;
+        }
+        long renderTime = nowNanos - delayMs * 1_000_000L;
+
+        // เวลาที่วาดเลย snapshot ล่าสุดแล้ว: extrapolate (หรือหยุดอยู่ที่อันล่าสุด)
+        if (count == 1 || renderTime >= times[newest]) {
+            if (count == 1) {
+                blend(states[newest], 0, states[newest], 0, 0, out);
+                return;
+            }
+            int prev = (newest - 1 + BUFFER_SIZE) % BUFFER_SIZE;
+            long ahead = Math.min(renderTime - times[newest], MAX_EXTRAPOLATION_MS * 1_000_000L);
+            blend(states[prev], times[prev], states[newest], times[newest], times[newest] + ahead, out);
+            return;
+        }
+
+        // หาอันที่เก่าที่สุดที่ยังไม่เลย renderTime แล้ว interpolate กับอันถัดไป
+        for (int i = 1; i < count; i++) {
+            int older = (newest - i + BUFFER_SIZE) % BUFFER_SIZE;
+            if (times[older] <= renderTime) {
+                int newer = (older + 1) % BUFFER_SIZE;
+                blend(states[older], times[older], states[newer], times[newer], renderTime, out);
+                return;
+            }
+        }
+        // เก่ากว่าทุกอันในบัฟเฟอร์ (เพิ่งเริ่ม) วาดอันเก่าสุดไปก่อน
+        int oldest = (newest - count + 1 + BUFFER_SIZE) % BUFFER_SIZE;
+        blend(states[oldest], 0, states[oldest], 0, 0, out);
+    }
+
+    // ตำแหน่ง ณ เวลา t เทียบจากสอง snapshot (t > tb คือ extrapolate, ta == tb คือใช้ b ตรงๆ)
+    // ทั้งสอง list เรียงตาม id จึงเดินคู่กันแบบ merge หาคนเดียวกันใน a โดยไม่ต้องค้นทั้ง list
+    private static void blend(List<PlayerHandler.Player> a, long ta,
+                              List<PlayerHandler.Player> b, long tb, long t, View out) {
+        double alpha = tb > ta ? (double) (t - ta) / (tb - ta) : 1.0;
+        int n = b.size();
+        int na = a.size();
+        int j = 0;
+        out.ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            PlayerHandler.Player pb = b.get(i);
+            while (j < na && a.get(j).id < pb.id) j++;
+            PlayerHandler.Player pa = (j < na && a.get(j).id == pb.id) ? a.get(j) : null;
+            int x = pb.x;
+            int y = pb.y;
+            if (pa != null && pa != pb
+                    && Math.abs(pb.x - pa.x) <= SNAP_DISTANCE && Math.abs(pb.y - pa.y) <= SNAP_DISTANCE) {
+                x = (int) Math.round(pa.x + (pb.x - pa.x) * alpha);
+                y = (int) Math.round(pa.y + (pb.y - pa.y) * alpha);
+            }
+            out.id[i] = pb.id;
+            out.x[i] = x;
+            out.y[i] = y;
+            out.score[i] = pb.score;
+            out.tagger[i] = pb.isTagger;
+            out.name[i] = pb.name;
+        }
+        out.count = n;
+    }
+}
\ No newline at end of file
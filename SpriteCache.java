@@ -0,0 +1,174 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.List;
+
+/**
+ * รูปที่ย่อขนาดไว้ล่วงหน้าสำหรับ Panel ของ ClientGame
+ *
+ * รูปต้นฉบับมีขนาดใหญ่มาก (ไฟล์ละ ~1.4 MB) ถ้าสั่ง drawImage(img, x, y, w, h) ทุกเฟรม
+ * Java2D ต้องย่อรูปเต็มทุกครั้ง จึงย่อครั้งเดียวให้ตรงขนาดที่วาดจริง (PLAYER_SIZE และ
+ * Room.OBSTACLE_TYPE_SIZES) เป็น compatible image ของจอ ซึ่ง Java2D เก็บสำเนาไว้ใน VRAM ให้เอง
+ *
+ * พื้นหลังกับสิ่งกีดขวางไม่ขยับระหว่างเกม จึงวาดรวมไว้ใน VolatileImage ชั้นเดียว
+ * ชั้นนี้กว้างกว่าจอด้านละ LAYER_MARGIN (แผนที่ใหญ่กว่าจอได้ กล้องเลื่อนตามผู้เล่น)
+ * และวาดชั้นนั้นใหม่เฉพาะเมื่อ surface หาย (contentsLost), ขนาด panel เปลี่ยน, ได้ผังใหม่
+ * หรือกล้องเลื่อนจนจอเลยขอบของชั้น บนแผนที่ที่เล็กกว่าจอกล้องไม่ขยับ จึงวาดแค่ครั้งเดียวเหมือนเดิม
+ *
+ * drawBackground / drawPlayer เรียกจาก EDT เท่านั้น ส่วน setObstacles เรียกจาก thread ไหนก็ได้
+ */
+public final class SpriteCache {
+
+    static final int LAYER_MARGIN = 256;
+
+    private final Image backgroundSource;
+    private final Image taggerSource;
+    private final Image runnerSource;
+    private final Image[] obstacleSources;
+
+    // สร้างตาม GraphicsConfiguration ของจอที่ panel อยู่ (สร้างใหม่ถ้าย้ายจอ)
+    private GraphicsConfiguration config;
+    private BufferedImage taggerSprite;
+    private BufferedImage runnerSprite;
+    private BufferedImage[] obstacleSprites;
+
+    // ชั้นพื้นหลัง + สิ่งกีดขวาง (มุมซ้ายบนของชั้นอยู่ที่พิกัดแผนที่ layerX, layerY)
+    private VolatileImage layer;
+    private int layerX;
+    private int layerY;
+    private volatile List<Obstacle> obstacles = List.of();
+    private List<Obstacle> layerObstacles;
+
+    public SpriteCache(Image background, Image tagger, Image runner, Image[] obstacles) {
+        this.backgroundSource = background;
+        this.taggerSource = tagger;
+        this.runnerSource = runner;
+        this.obstacleSources = obstacles;
+    }
+
+    /**
+     * ตั้งผังสิ่งกีดขวางใหม่ ชั้นพื้นหลังจะถูกวาดใหม่ในเฟรมถัดไป
+     */
+    public void setObstacles(List<Obstacle> layout) {
+        obstacles = List.copyOf(layout);
+    }
+
+    /**
+     * วาดพื้นหลังและสิ่งกีดขวางส่วนที่อยู่ในจอด้วย drawImage ครั้งเดียว
+     * @param cameraX พิกัดแผนที่ที่ตรงกับมุมซ้ายบนของจอ
+     */
+    public void drawBackground(Graphics2D g, int width, int height, GraphicsConfiguration gc, int cameraX, int cameraY) {
+        ensureSprites(gc);
+        int layerWidth = width + 2 * LAYER_MARGIN;
+        int layerHeight = height + 2 * LAYER_MARGIN;
+        do {
+            int status = layer == null ? VolatileImage.IMAGE_INCOMPATIBLE : layer.validate(gc);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE
+                    || layer.getWidth() != layerWidth || layer.getHeight() != layerHeight) {
+                if (layer != null) layer.flush();
+                layer = gc.createCompatibleVolatileImage(layerWidth, layerHeight);
+                layer.validate(gc);
+                status = VolatileImage.IMAGE_RESTORED;
+            }
+            // IMAGE_RESTORED = surface ถูกคืนไป (เช่น เปลี่ยนโหมดจอ) เนื้อหาหายหมด
+            boolean dirty = status != VolatileImage.IMAGE_OK;
+            boolean outside = cameraX < layerX || cameraY < layerY
+                    || cameraX + width > layerX + layerWidth || cameraY + height > layerY + layerHeight;
+            List<Obstacle> layout = obstacles;
+            if (dirty || outside || layout != layerObstacles) {
+                if (outside) {
+                    layerX = cameraX - LAYER_MARGIN;
+                    layerY = cameraY - LAYER_MARGIN;
+                }
+                renderLayer(width, height, layout);
+                layerObstacles = layout;
+            }
+            g.drawImage(layer, layerX - cameraX, layerY - cameraY, null);
+        } while (layer.contentsLost());
+    }
+
+    public void drawPlayer(Graphics g, boolean tagger, int x, int y) {
+        g.drawImage(tagger ? taggerSprite : runnerSprite, x, y, null);
+    }
+
+    // width / height = ขนาดจอ พื้นหลังถูกยืดเท่าจอแล้วปูต่อกันเป็นตาราง (บนแผนที่เล็ก = ยืดเต็มจอเหมือนเดิม)
+    private void renderLayer(int width, int height, List<Obstacle> layout) {
+        Graphics2D lg = layer.createGraphics();
+        try {
+            int layerWidth = layer.getWidth();
+            int layerHeight = layer.getHeight();
+            if (backgroundSource != null) {
+                lg.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                for (int ty = Math.floorDiv(layerY, height) * height; ty < layerY + layerHeight; ty += height) {
+                    for (int tx = Math.floorDiv(layerX, width) * width; tx < layerX + layerWidth; tx += width) {
+                        lg.drawImage(backgroundSource, tx - layerX, ty - layerY, width, height, null);
+                    }
+                }
+            } else {
+                lg.setColor(Color.LIGHT_GRAY);
+                lg.fillRect(0, 0, layerWidth, layerHeight);
+            }
+            for (Obstacle o : layout) {
+                if (o.x >= layerX + layerWidth || o.y >= layerY + layerHeight
+                        || o.x + o.width <= layerX || o.y + o.height <= layerY) continue;
+                BufferedImage sprite = obstacleSprites[o.type];
+                if (sprite.getWidth() == o.width && sprite.getHeight() == o.height) {
+                    lg.drawImage(sprite, o.x - layerX, o.y - layerY, null);
+                } else {
+                    lg.drawImage(sprite, o.x - layerX, o.y - layerY, o.width, o.height, null);
+                }
+            }
+        } finally {
+            lg.dispose();
+        }
+    }
+
+    private void ensureSprites(GraphicsConfiguration gc) {
+        if (gc == config) return;
+        config = gc;
+        int size = PlayerHandler.PLAYER_SIZE;
+        taggerSprite = scale(gc, taggerSource, size, size, Color.RED);
+        runnerSprite = scale(gc, runnerSource, size, size, Color.BLUE);
+        obstacleSprites = new BufferedImage[Room.NUM_OBSTACLE_TYPES];
+        for (int type = 0; type < obstacleSprites.length; type++) {
+            Image src = type < obstacleSources.length ? obstacleSources[type] : null;
+            int[] dim = Room.OBSTACLE_TYPE_SIZES[type];
+            obstacleSprites[type] = scale(gc, src, dim[0], dim[1], Color.DARK_GRAY);
+        }
+        layer = null;
+    }
+
+    /**
+     * ย่อรูปเป็นขนาด w x h ครั้งเดียว (ถ้าไม่มีรูปใช้สี่เหลี่ยมสี fallback แทนเหมือนเดิม)
+     * ย่อทีละครึ่งก่อนแล้วค่อยย่อขั้นสุดท้าย bilinear ทีเดียวจากรูปใหญ่มากจะแตก
+     */
+    static BufferedImage scale(GraphicsConfiguration gc, Image src, int w, int h, Color fallback) {
+        BufferedImage out = gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+        Graphics2D g = out.createGraphics();
+        try {
+            if (src == null) {
+                g.setColor(fallback);
+                g.fillRect(0, 0, w, h);
+                return out;
+            }
+            Image current = src;
+            int cw = src.getWidth(null);
+            int ch = src.getHeight(null);
+            while (cw / 2 >= w && ch / 2 >= h) {
+                cw /= 2;
+                ch /= 2;
+                BufferedImage half = new BufferedImage(cw, ch, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D hg = half.createGraphics();
+                hg.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                hg.drawImage(current, 0, 0, cw, ch, null);
+                hg.dispose();
+                current = half;
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(current, 0, 0, w, h, null);
+            return out;
+        } finally {
+            g.dispose();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,250 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * load test เปรียบเทียบ BlockingTransport บน platform thread กับ virtual thread
+ *
+ * วัดหน่วยความจำต่อการเชื่อมต่อ (RSS ของ process ที่เพิ่มขึ้น / จำนวนการเชื่อมต่อ)
+ * และ p50/p99 ของเวลา broadcast ของห้อง ที่ 100, 1,000 และ 5,000 การเชื่อมต่อ
+ *
+ * แต่ละกรณีรันใน JVM แยก (สถานะของ Server เป็น static) โดยมี server และ client
+ * อยู่ใน process เดียวกัน ฝั่ง client ใช้ Selector thread เดียวเหมือนกันทุกกรณี
+ * ส่วนต่างระหว่างสองโหมดจึงมาจาก thread ฝั่ง server
+ * keyframe ถูกปิดไว้ (-Dtag.keyframeTicks สูงมาก) เพื่อให้วัดต้นทุนของ thread ไม่ใช่ bandwidth
+ * bot ทุกตัวเข้าห้องชื่อเดียวกัน (LOAD_ROOM โดยตั้ง tag.roomCapacity = จำนวนการเชื่อมต่อ) จึงเป็นแมตช์เดียวขนาดเท่าจำนวนการเชื่อมต่อ
+ *
+ * วิธีใช้: java ThreadModeLoadTest [วินาทีต่อกรณี] [จำนวนการเชื่อมต่อ...]
+ */
+public class ThreadModeLoadTest {
+
+    private static final int BASE_PORT = 18080;
+    private static final String LOAD_ROOM = "load";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            runChild(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            return;
+        }
+
+        int seconds = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+        int[] counts = {100, 1000, 5000};
+        if (args.length > 1) {
+            counts = Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray();
+        }
+
+        System.out.printf("%-9s %7s %12s %9s %10s %10s%n", "mode", "conns", "rss/conn KB", "threads", "p50 us", "p99 us");
+        int port = BASE_PORT;
+        for (int n : counts) {
+            for (String mode : new String[]{"platform", "virtual"}) {
+                String result = spawnChild(mode, n, seconds, port++);
+                System.out.println(result != null ? result : String.format("%-9s %7d   (failed)", mode, n));
+            }
+        }
+    }
+
+    private static String spawnChild(String mode, int connections, int seconds, int port) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> cmd = new ArrayList<>(List.of(java,
+                "-cp", System.getProperty("java.class.path"),
+                "-Dtag.keyframeTicks=1000000",
+                "-Dtag.roomCapacity=" + connections,
+                "ThreadModeLoadTest", "--child", mode,
+                String.valueOf(connections), String.valueOf(seconds), String.valueOf(port)));
+        Process p = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String result = null;
+        for (String line : new String(p.getInputStream().readAllBytes()).split("\n")) {
+            if (line.startsWith("RESULT ")) result = line.substring(7);
+        }
+        p.waitFor();
+        return result;
+    }
+
+    //------------------------child process----------------------------//
+    private static void runChild(String mode, int connections, int seconds, int port) throws Exception {
+        Server.virtualThreads = mode.equals("virtual");
+        Thread server = new Thread(() -> new Server(port, Server.DEFAULT_TICK_RATE, "blocking").start());
+        server.setDaemon(true);
+        server.start();
+        Thread.sleep(1000);
+
+        System.gc();
+        Thread.sleep(500);
+        long rssBefore = residentBytes();
+
+        Selector selector = Selector.open();
+        for (int i = 0; i < connections; i++) {
+            SocketChannel ch = connect(port);
+            ch.write(joinFrame());
+            ch.configureBlocking(false);
+            ch.register(selector, SelectionKey.OP_READ, new BotReader());
+        }
+
+        Thread reader = new Thread(() -> readLoop(selector), "bot-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        // รอให้ทุก session ได้ keyframe แรกและเริ่ม ack ก่อนเริ่มวัด
+        Thread.sleep(3000);
+        System.gc();
+        Thread.sleep(500);
+        long rssAfter = residentBytes();
+        Thread.sleep(seconds * 1000L);
+
+        // ใช้เฉพาะ broadcast ในช่วงที่วัด (Server เก็บย้อนหลังได้ 1024 ครั้ง)
+        long[] samples = Server.recentBroadcastNanos();
+        int window = (int) Math.min(samples.length, (long) seconds * Server.tickRate);
+        long[] recent = Arrays.copyOfRange(samples, samples.length - window, samples.length);
+        Arrays.sort(recent);
+
+        double perConnKb = (rssAfter - rssBefore) / 1024.0 / connections;
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        System.out.printf("RESULT %-9s %7d %12.1f %9d %10.0f %10.0f%n", mode, connections, perConnKb, threads,
+                percentile(recent, 0.50) / 1000.0, percentile(recent, 0.99) / 1000.0);
+        System.out.flush();
+        System.exit(0);
+    }
+
+    /**
+     * ServerSocket มี backlog จำกัด การเชื่อมต่อรัวๆ อาจถูกปฏิเสธ จึงลองใหม่สักสองสามครั้ง
+     */
+    private static SocketChannel connect(int port) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return SocketChannel.open(new InetSocketAddress("localhost", port));
+            } catch (ConnectException e) {
+                if (attempt >= 100) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static ByteBuffer joinFrame() {
+        byte[] payload = WireProtocol.encodeJoin(LOAD_ROOM);
+        ByteBuffer frame = ByteBuffer.allocate(3 + payload.length);
+        frame.putShort((short) (1 + payload.length)).put(WireProtocol.OP_JOIN).put(payload).flip();
+        return frame;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+
+    /**
+     * RSS ของ process จาก /proc (Linux) ถ้าอ่านไม่ได้ใช้ heap ที่ใช้อยู่แทน
+     */
+    private static long residentBytes() {
+        try {
+            for (String line : Files.readAllLines(new File("/proc/self/status").toPath())) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static void readLoop(Selector selector) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+        try {
+            while (true) {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    SocketChannel ch = (SocketChannel) key.channel();
+                    buf.clear();
+                    int n = ch.read(buf);
+                    if (n < 0) {
+                        key.cancel();
+                        ch.close();
+                        continue;
+                    }
+                    buf.flip();
+                    ((BotReader) key.attachment()).consume(buf, ch);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * แยก frame แบบ streaming โดยไม่เก็บ payload (เก็บแค่ seq เพื่อส่ง ack)
+     * ทำให้หนึ่งการเชื่อมต่อใช้หน่วยความจำฝั่ง client เพียงไม่กี่ไบต์
+     */
+    private static final class BotReader {
+        private int handshakeLeft = 5;
+        private final byte[] head = new byte[12];
+        private int headLen = 0;
+        private long bodyLeft = -1;
+        private int type;
+        private int seq;
+        private int seqBytes;
+
+        void consume(ByteBuffer buf, SocketChannel ch) throws IOException {
+            while (buf.hasRemaining()) {
+                if (handshakeLeft > 0) {
+                    int n = Math.min(handshakeLeft, buf.remaining());
+                    buf.position(buf.position() + n);
+                    handshakeLeft -= n;
+                    continue;
+                }
+                if (bodyLeft < 0) {
+                    head[headLen++] = buf.get();
+                    int need = (headLen >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFF) ? 6 : 2;
+                    if (headLen < need) continue;
+                    bodyLeft = (need == 2)
+                            ? ((head[0] & 0xFF) << 8) | (head[1] & 0xFF)
+                            : ByteBuffer.wrap(head, 2, 4).getInt();
+                    headLen = 0;
+                    type = -1;
+                    seq = 0;
+                    seqBytes = 0;
+                    continue;
+                }
+                if (type < 0) {
+                    type = buf.get();
+                    bodyLeft--;
+                } else if (type == WireProtocol.MSG_SNAPSHOT && seqBytes < 4) {
+                    seq = (seq << 8) | (buf.get() & 0xFF);
+                    seqBytes++;
+                    bodyLeft--;
+                } else {
+                    int n = (int) Math.min(bodyLeft, buf.remaining());
+                    buf.position(buf.position() + n);
+                    bodyLeft -= n;
+                }
+                if (bodyLeft == 0) {
+                    if (type == WireProtocol.MSG_SNAPSHOT) sendAck(ch, seq);
+                    bodyLeft = -1;
+                }
+            }
+        }
+
+        private void sendAck(SocketChannel ch, int seq) throws IOException {
+            ByteBuffer ack = ByteBuffer.allocate(7);
+            ack.putShort((short) 5).put(WireProtocol.OP_ACK).putInt(seq).flip();
+            while (ack.hasRemaining()) {
+                ch.write(ack);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+import java.io.IOException;
+
+/**
+ * ชั้นรับส่งข้อมูลของ Server
+ *
+ * transport มีหน้าที่รับการเชื่อมต่อแล้วเรียก
+ * Server.onConnect / Server.onFrame / Server.onDisconnect
+ * ส่วนตรรกะของเกมทั้งหมดอยู่ใน Server
+ */
+public interface Transport {
+
+    /**
+     * เปิดพอร์ตและรับการเชื่อมต่อไปเรื่อยๆ (เมธอดนี้ไม่ return จนกว่าจะเกิดข้อผิดพลาด)
+     */
+    void serve(int port) throws IOException;
+
+    static Transport create(String name) {
+        switch (name) {
+            case "blocking": return new BlockingTransport();
+            case "nio": return new NioTransport(Integer.getInteger("tag.ioThreads", NioTransport.DEFAULT_IO_THREADS));
+            default: throw new IllegalArgumentException("Unknown transport: " + name);
+        }
+    }
+}
\ No newline at end of file
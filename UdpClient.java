@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * ช่องทาง UDP ฝั่ง client (ใช้ทั้ง ClientGame และ LoadBot)
+ *
+ * หลังเปิดจะส่ง ack เปล่า (NO_BASELINE) ซ้ำๆ ให้ server รู้ address ของเรา จนกว่าจะได้ datagram แรกกลับมา
+ * ก่อนหน้านั้น (หรือถ้าไม่เคยได้เลย เช่น UDP ถูก firewall ปิด) ผู้เรียกควรส่ง input / ack ทาง TCP ต่อไป
+ * ดู isEstablished()
+ *
+ * input ทุก datagram แนบ input ล่าสุด UDP_REDUNDANT_INPUTS ตัวไปด้วย datagram ที่หายไปบางอันจึงไม่ทำให้ input หาย
+ */
+final class UdpClient {
+
+    // ส่ง hello ทุกๆ เท่านี้ ms ไม่เกิน HELLO_ATTEMPTS ครั้ง
+    private static final int HELLO_INTERVAL_MS = 100;
+    private static final int HELLO_ATTEMPTS = 50;
+
+    private final DatagramChannel channel;
+    private final UdpLink link;
+    private final SocketAddress server;
+    private final int playerId;
+    private final int token;
+    private final Consumer<ByteBuffer> onSnapshot;
+
+    // input ล่าสุด (index 0 = เก่าสุด) ใช้ภายใต้ lock ของ this
+    private final int[] inputSeqs = new int[WireProtocol.UDP_REDUNDANT_INPUTS];
+    private final int[] inputButtons = new int[WireProtocol.UDP_REDUNDANT_INPUTS];
+    private int inputCount = 0;
+
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private volatile boolean established = false;
+
+    /**
+     * @param onSnapshot เรียกจาก thread รับ datagram ของ client นี้ buffer อยู่ที่ตำแหน่งหลัง type
+     *                   และถูกใช้ซ้ำกับ datagram ถัดไป ห้ามเก็บไว้
+     */
+    UdpClient(String host, int port, int playerId, int token, Consumer<ByteBuffer> onSnapshot) throws IOException {
+        this.server = new InetSocketAddress(host, port);
+        this.playerId = playerId;
+        this.token = token;
+        this.onSnapshot = onSnapshot;
+        channel = DatagramChannel.open();
+        channel.connect(server);
+        link = new UdpLink(channel);
+        Thread.ofVirtual().name("udp-client-" + playerId).start(this::receiveLoop);
+        Thread.ofVirtual().name("udp-hello-" + playerId).start(this::helloLoop);
+    }
+
+    /**
+     * ได้รับ datagram จาก server แล้วอย่างน้อยหนึ่งอัน (เส้นทาง UDP ใช้ได้ทั้งไปและกลับ)
+     */
+    boolean isEstablished() {
+        return established;
+    }
+
+    synchronized void sendInput(int seq, int buttons) {
+        if (inputCount == inputSeqs.length) {
+            System.arraycopy(inputSeqs, 1, inputSeqs, 0, inputCount - 1);
+            System.arraycopy(inputButtons, 1, inputButtons, 0, inputCount - 1);
+            inputCount--;
+        }
+        inputSeqs[inputCount] = seq;
+        inputButtons[inputCount] = buttons;
+        inputCount++;
+        link.send(WireProtocol.encodeUdpInputs(playerId, token, inputSeqs, inputButtons, inputCount), server);
+    }
+
+    void sendAck(int seq) {
+        link.send(WireProtocol.encodeUdpAck(playerId, token, seq), server);
+    }
+
+    long receivedBytes() {
+        return receivedBytes.get();
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void helloLoop() {
+        try {
+            for (int i = 0; i < HELLO_ATTEMPTS && !established && channel.isOpen(); i++) {
+                sendAck(WireProtocol.NO_BASELINE);
+                Thread.sleep(HELLO_INTERVAL_MS);
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buf = ByteBuffer.allocate(1 + WireProtocol.MAX_DATAGRAM_PAYLOAD);
+        while (channel.isOpen()) {
+            try {
+                buf.clear();
+                channel.receive(buf);
+                buf.flip();
+                receivedBytes.addAndGet(buf.remaining());
+                established = true;
+                if (buf.remaining() > 0 && buf.get() == WireProtocol.MSG_SNAPSHOT) {
+                    onSnapshot.accept(buf);
+                }
+            } catch (PortUnreachableException e) {
+                // hello ไปถึงก่อน server เปิด UDP หรือ server ไม่ได้เปิด ลองรับต่อ
+            } catch (IOException e) {
+                return;
+            } catch (RuntimeException e) {
+                // datagram ผิดรูปแบบ ทิ้งไป
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ส่ง datagram ออกทาง DatagramChannel (ใช้ทั้ง UdpServer และ UdpClient)
+ *
+ * จำลองเครือข่ายที่แย่ได้ เพื่อทดสอบบน localhost
+ *  -Dtag.udpLossPercent  เปอร์เซ็นต์ของ datagram ที่ทิ้งไปเลย (ค่าเริ่มต้น 0)
+ *  -Dtag.udpLatencyMs    หน่วงทุก datagram เท่านี้ (ค่าเริ่มต้น 0)
+ *  -Dtag.udpJitterMs     หน่วงเพิ่มแบบสุ่ม 0..ค่านี้ (datagram จึงถึงสลับลำดับกันได้)
+ * มีผลกับ datagram ขาออกของ process ที่ตั้งค่าไว้เท่านั้น
+ * ตั้งทั้งที่ server และ client = จำลองทั้งขาไปและขากลับ
+ */
+final class UdpLink {
+
+    public static double lossPercent = Double.parseDouble(System.getProperty("tag.udpLossPercent", "0"));
+    public static int latencyMs = Integer.getInteger("tag.udpLatencyMs", 0);
+    public static int jitterMs = Integer.getInteger("tag.udpJitterMs", 0);
+
+    private static ScheduledExecutorService delayer;
+
+    private final DatagramChannel channel;
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong simulatedDrops = new AtomicLong();
+
+    UdpLink(DatagramChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * ส่งหนึ่ง datagram ถ้าส่งไม่สำเร็จถือว่าหายไปเหมือน datagram ทั่วไป (ไม่แจ้งผู้เรียก)
+     * datagram ห้ามถูกแก้หลังส่งแล้ว เพราะอาจถูกเขียนจริงทีหลังจาก thread อื่น
+     */
+    void send(byte[] datagram, SocketAddress to) {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        if (lossPercent > 0 && rand.nextDouble(100) < lossPercent) {
+            simulatedDrops.incrementAndGet();
+            return;
+        }
+        int delay = latencyMs + (jitterMs > 0 ? rand.nextInt(jitterMs + 1) : 0);
+        if (delay <= 0) {
+            write(datagram, to);
+        } else {
+            delayer().schedule(() -> write(datagram, to), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void write(byte[] datagram, SocketAddress to) {
+        try {
+            channel.send(ByteBuffer.wrap(datagram), to);
+            sentBytes.addAndGet(datagram.length);
+        } catch (IOException e) {
+            // ปลายทางยังไม่เปิด / buffer เต็ม / channel ปิดแล้ว
+        }
+    }
+
+    long sentBytes() {
+        return sentBytes.get();
+    }
+
+    long simulatedDrops() {
+        return simulatedDrops.get();
+    }
+
+    private static synchronized ScheduledExecutorService delayer() {
+        if (delayer == null) {
+            delayer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "udp-delay");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return delayer;
+    }
+}
\ No newline at end of file
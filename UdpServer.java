@@ -0,0 +1,67 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * ช่องทาง UDP ของ server สำหรับ snapshot / input / ack (ดูรูปแบบ datagram ใน WireProtocol)
+ *
+ * ผูกกับเลข port เดียวกับ TCP การเชื่อมต่อ TCP ยังเป็นตัวหลักของ session
+ * (ถ้า TCP หลุด session ก็จบ) UDP เป็นแค่ทางด่วนที่ไม่รับประกันว่าจะถึง
+ * client ที่ไม่ได้ขอ OP_UDP หรือยังไม่เคยส่ง datagram มา ได้ snapshot ทาง TCP เหมือนเดิม
+ */
+final class UdpServer {
+
+    private final DatagramChannel channel;
+    private final UdpLink link;
+
+    UdpServer(int port) throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        link = new UdpLink(channel);
+    }
+
+    int port() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    void start() {
+        Server.threadBuilder("udp-receiver").start(this::receiveLoop);
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buf = ByteBuffer.allocate(1 + WireProtocol.MAX_DATAGRAM_PAYLOAD);
+        while (channel.isOpen()) {
+            try {
+                buf.clear();
+                SocketAddress from = channel.receive(buf);
+                buf.flip();
+                if (buf.remaining() < WireProtocol.UDP_HEADER_BYTES) continue;
+                Server.onDatagram(from, buf);
+            } catch (IOException e) {
+                if (!channel.isOpen()) return;
+            } catch (RuntimeException e) {
+                // datagram ผิดรูปแบบ (สั้นกว่าที่บอกไว้) ทิ้งไป
+            }
+        }
+    }
+
+    /**
+     * ส่ง snapshot หนึ่งอันเป็น datagram (ผู้เรียกต้องตรวจขนาดกับ MAX_DATAGRAM_PAYLOAD แล้ว)
+     */
+    void sendSnapshot(SocketAddress to, byte[] payload) {
+        byte[] datagram = new byte[1 + payload.length];
+        datagram[0] = WireProtocol.MSG_SNAPSHOT;
+        System.arraycopy(payload, 0, datagram, 1, payload.length);
+        link.send(datagram, to);
+    }
+
+    long sentBytes() {
+        return link.sentBytes();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,459 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * โปรโตคอลไบนารีที่ใช้แทน Java serialization ระหว่าง Server และ ClientGame
+ *
+ * handshake (server -> client): [u8 VERSION][i32 playerId]
+ * frame (ทั้งสองทิศทาง):        [u16 length][u8 type][payload...]
+ *   (length นับรวม type + payload; ถ้ายาวตั้งแต่ 0xFFFF ขึ้นไป
+ *    จะเขียนเป็น [u16 0xFFFF][i32 length] แทน)
+ *
+ * lobby: หลัง handshake client ต้องส่ง OP_JOIN [u8 len][ชื่อห้อง UTF-8] (ชื่อว่าง = quick match)
+ *        หรือ OP_CREATE (ไม่มี payload) แล้ว server ตอบ MSG_ROOM [u8 status][u8 len][ชื่อห้อง][u16 tickRate]
+ *        (client ส่ง OP_INPUT ตามจังหวะ tickRate นี้ เพราะห้องใช้ input tick ละหนึ่ง frame)
+ *        snapshot ของห้องจะเริ่มส่งหลัง MSG_ROOM เท่านั้น
+ *
+ * client -> server: type คือ opcode ของคำสั่ง (OP_*) ไม่มี payload ยกเว้น
+ *                   OP_INPUT [i32 seq][u8 buttons] ปุ่มที่กดค้างอยู่ (INPUT_*) ส่ง tick ละหนึ่งครั้ง
+ *                   OP_ACK [i32 seq] ของ snapshot ที่ได้รับแล้ว
+ * server -> client: MSG_WORLD [i32 width][i32 height][u16 chunkSize] ส่งตอนเข้าร่วม/เริ่มแมตช์ (ล้าง chunk เดิมทิ้ง)
+ *                   MSG_CHUNK [i32 cx][i32 cy][u16 count][obstacle...] สิ่งกีดขวางของ chunk หนึ่ง
+ *                   ส่งเมื่อผู้เล่นเข้าใกล้ chunk นั้น และ MSG_CHUNK_DROP [i32 cx][i32 cy] เมื่อออกห่าง
+ *                   (ดู WorldChunks) chunk ที่ว่างไม่ถูกส่ง
+ *                   MSG_SNAPSHOT ส่งทุก tick เป็น keyframe หรือ delta
+ *
+ * snapshot: [i32 seq][i32 baseSeq][u16 remainingSeconds][u8 flags][i32 winner]
+ *           [u16 changed][player...][u16 removed][i32 id...]
+ *   baseSeq = NO_BASELINE หมายถึง keyframe (มีผู้เล่นครบทุกคน)
+ *   นอกนั้นเป็น delta: มีเฉพาะผู้เล่นที่เปลี่ยนไปจาก snapshot baseSeq ที่ client ack แล้ว
+ *
+ * UDP (ไม่บังคับ เปิดด้วย -Dtag.udp ทั้งสองฝั่ง): ใช้ส่ง snapshot / input / ack เท่านั้น
+ *   handshake, lobby, OP_READY, MSG_WORLD / MSG_CHUNK และ snapshot ที่จบเกมยังไปทาง TCP เสมอ
+ *   client ขอใน lobby ด้วย OP_UDP แล้ว server ตอบ MSG_UDP [u16 port][i32 token] (port 0 = server ไม่เปิด UDP)
+ *   datagram client -> server: [u8 type][i32 playerId][i32 token] ตามด้วย
+ *     OP_ACK [i32 seq] หรือ OP_INPUT [u8 count][i32 seq][u8 buttons]... (input ล่าสุด count ตัว เรียงเก่าไปใหม่
+ *     ส่งซ้ำทุก datagram เผื่อ datagram ก่อนหน้าหาย)
+ *   datagram server -> client: [u8 MSG_SNAPSHOT][snapshot] (หนึ่ง datagram = หนึ่งข้อความ ไม่มี length)
+ *   ไม่มีการส่งซ้ำ: snapshot ที่ seq เก่ากว่าอันล่าสุดที่ได้รับแล้วถูกทิ้ง และ input ที่ seq ซ้ำถูกทิ้งที่ server
+ */
+public final class WireProtocol {
+
+    public static final int VERSION = 9;
+
+    // ความยาวตั้งแต่ค่านี้ต้องใช้ header แบบขยาย
+    public static final int EXTENDED_LENGTH = 0xFFFF;
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    public static final int MAX_FRAME_HEADER_BYTES = 7;
+
+    // จำนวน snapshot ย้อนหลังที่ทั้งสองฝั่งเก็บไว้ใช้เป็น baseline ของ delta
+    public static final int SNAPSHOT_HISTORY = 64;
+    public static final int NO_BASELINE = -1;
+
+    // --- server -> client ---
+    public static final byte MSG_SNAPSHOT = 3;
+    public static final byte MSG_ROOM = 4;
+    public static final byte MSG_UDP = 5;
+    public static final byte MSG_WORLD = 6;
+    public static final byte MSG_CHUNK = 7;
+    public static final byte MSG_CHUNK_DROP = 8;
+
+    // --- client -> server (opcode หนึ่งไบต์) ---
+    public static final byte OP_READY = 10;
+    public static final byte OP_INPUT = 11;
+    public static final byte OP_ACK = 20;
+    public static final byte OP_JOIN = 30;
+    public static final byte OP_CREATE = 31;
+    public static final byte OP_UDP = 32;
+
+    // status ของ MSG_ROOM
+    public static final int ROOM_OK = 0;
+    public static final int ROOM_REJECTED = 1;
+
+    public static final int MAX_ROOM_NAME_BYTES = 32;
+
+    // bit ของปุ่มใน OP_INPUT
+    public static final int INPUT_UP = 1;
+    public static final int INPUT_DOWN = 1 << 1;
+    public static final int INPUT_LEFT = 1 << 2;
+    public static final int INPUT_RIGHT = 1 << 3;
+
+    // seq(4) buttons(1)
+    static final int INPUT_BYTES = 5;
+
+    // type(1) playerId(4) token(4) ของ datagram ขาเข้า server
+    static final int UDP_HEADER_BYTES = 9;
+    // snapshot ที่ยาวกว่านี้ส่งทาง TCP แทน (ให้ทั้ง datagram ไม่เกิน MTU ทั่วไปและไม่ถูกแบ่ง fragment)
+    public static final int MAX_DATAGRAM_PAYLOAD = 1200;
+    // จำนวน input ล่าสุดที่แนบไปในทุก datagram
+    public static final int UDP_REDUNDANT_INPUTS = 4;
+
+    // flags ของผู้เล่น
+    static final int PLAYER_TAGGER = 1;
+    static final int PLAYER_READY = 1 << 1;
+
+    // flags ของสถานะเกม
+    static final int GAME_STARTED = 1;
+    static final int GAME_OVER = 1 << 1;
+
+    // id(4) x(4) y(4) score(2) flags(1) lastInputSeq(4)
+    // lastInputSeq = seq ของ OP_INPUT ล่าสุดที่ server ใช้แล้ว ให้ client ของผู้เล่นนั้นใช้ reconcile
+    static final int PLAYER_BYTES = 19;
+    // x(4) y(4) width(2) height(2) type(1)
+    static final int OBSTACLE_BYTES = 13;
+    // seq(4) baseSeq(4) remainingSeconds(2) flags(1) winner(4) changed(2) removed(2)
+    static final int SNAPSHOT_HEADER_BYTES = 19;
+
+    private WireProtocol() {}
+
+    //------------------------handshake----------------------------//
+    public static void writeHandshake(DataOutputStream out, int playerId) throws IOException {
+        out.writeByte(VERSION);
+        out.writeInt(playerId);
+        out.flush();
+    }
+
+    /**
+     * อ่าน handshake จาก server และคืนค่า playerId
+     * @throws IOException ถ้าเวอร์ชันโปรโตคอลไม่ตรงกัน
+     */
+    public static int readHandshake(DataInputStream in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version + " (expected " + VERSION + ")");
+        }
+        return in.readInt();
+    }
+
+    //------------------------frames----------------------------//
+    public static void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        int length = 1 + payload.length;
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IOException("Frame too large: " + length + " bytes");
+        }
+        if (length < EXTENDED_LENGTH) {
+            out.writeShort(length);
+        } else {
+            out.writeShort(EXTENDED_LENGTH);
+            out.writeInt(length);
+        }
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    /**
+     * จำนวนไบต์ทั้งหมดของ frame บนสาย (header + type + payload)
+     */
+    public static int frameBytes(int payloadLength) {
+        int length = 1 + payloadLength;
+        return (length < EXTENDED_LENGTH ? 2 : 6) + length;
+    }
+
+    /**
+     * เขียน header ของ frame (ความยาว + type) ลงใน dst
+     * @return จำนวนไบต์ของ header (3 หรือ 7)
+     */
+    public static int encodeFrameHeader(byte[] dst, int payloadLength, byte type) {
+        int length = 1 + payloadLength;
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Frame too large: " + length + " bytes");
+        }
+        int i = 0;
+        if (length < EXTENDED_LENGTH) {
+            dst[i++] = (byte) (length >>> 8);
+            dst[i++] = (byte) length;
+        } else {
+            dst[i++] = (byte) 0xFF;
+            dst[i++] = (byte) 0xFF;
+            dst[i++] = (byte) (length >>> 24);
+            dst[i++] = (byte) (length >>> 16);
+            dst[i++] = (byte) (length >>> 8);
+            dst[i++] = (byte) length;
+        }
+        dst[i++] = type;
+        return i;
+    }
+
+    /**
+     * อ่านหนึ่ง frame และคืนค่าเป็น buffer ที่ตำแหน่งแรกคือ type
+     */
+    public static ByteBuffer readFrame(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length == EXTENDED_LENGTH) {
+            length = in.readInt();
+        }
+        if (length <= 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return ByteBuffer.wrap(frame);
+    }
+
+    //------------------------input----------------------------//
+    public static byte[] encodeInput(int seq, int buttons) {
+        return ByteBuffer.allocate(INPUT_BYTES).putInt(seq).put((byte) buttons).array();
+    }
+
+    public static byte[] encodeAck(int seq) {
+        return ByteBuffer.allocate(4).putInt(seq).array();
+    }
+
+    //------------------------udp----------------------------//
+    public static byte[] encodeUdpOffer(int port, int token) {
+        return ByteBuffer.allocate(6).putShort((short) port).putInt(token).array();
+    }
+
+    public static byte[] encodeUdpAck(int playerId, int token, int seq) {
+        return ByteBuffer.allocate(UDP_HEADER_BYTES + 4).put(OP_ACK).putInt(playerId).putInt(token).putInt(seq).array();
+    }
+
+    /**
+     * datagram ของ input count ตัวล่าสุด (index 0 = เก่าสุด)
+     */
+    public static byte[] encodeUdpInputs(int playerId, int token, int[] seqs, int[] buttons, int count) {
+        ByteBuffer buf = ByteBuffer.allocate(UDP_HEADER_BYTES + 1 + count * INPUT_BYTES)
+                .put(OP_INPUT).putInt(playerId).putInt(token).put((byte) count);
+        for (int i = 0; i < count; i++) {
+            buf.putInt(seqs[i]).put((byte) buttons[i]);
+        }
+        return buf.array();
+    }
+
+    //------------------------lobby----------------------------//
+    public static byte[] encodeJoin(String roomName) {
+        byte[] name = roomNameBytes(roomName);
+        return ByteBuffer.allocate(1 + name.length).put((byte) name.length).put(name).array();
+    }
+
+    public static String decodeRoomName(ByteBuffer buf) {
+        int length = Math.min(buf.get() & 0xFF, buf.remaining());
+        byte[] name = new byte[length];
+        buf.get(name);
+        return new String(name, StandardCharsets.UTF_8).trim();
+    }
+
+    public static byte[] encodeRoom(int status, String roomName, int tickRate) {
+        byte[] name = roomNameBytes(roomName);
+        return ByteBuffer.allocate(4 + name.length).put((byte) status).put((byte) name.length).put(name)
+                .putShort((short) tickRate).array();
+    }
+
+    /**
+     * อ่าน MSG_ROOM แล้วคืนชื่อห้องที่ได้เข้า (ตามด้วย tickRate ที่ผู้เรียกอ่านต่อด้วย getShort)
+     * @throws IOException ถ้า server ปฏิเสธ
+     */
+    public static String decodeRoom(ByteBuffer buf) throws IOException {
+        int status = buf.get() & 0xFF;
+        String name = decodeRoomName(buf);
+        if (status != ROOM_OK) {
+            throw new IOException("Server rejected room request (status " + status + ")");
+        }
+        return name;
+    }
+
+    private static byte[] roomNameBytes(String roomName) {
+        byte[] name = (roomName == null ? "" : roomName).getBytes(StandardCharsets.UTF_8);
+        return name.length <= MAX_ROOM_NAME_BYTES ? name : Arrays.copyOf(name, MAX_ROOM_NAME_BYTES);
+    }
+
+    //------------------------world----------------------------//
+    public static byte[] encodeWorld(int width, int height, int chunkSize) {
+        return ByteBuffer.allocate(10).putInt(width).putInt(height).putShort((short) chunkSize).array();
+    }
+
+    /**
+     * MSG_CHUNK: พิกัดของ chunk ตามด้วยรายการสิ่งกีดขวางแบบเดียวกับ encodeObstacles
+     */
+    public static byte[] encodeChunk(int cx, int cy, List<Obstacle> obstacles) {
+        byte[] body = encodeObstacles(obstacles);
+        return ByteBuffer.allocate(8 + body.length).putInt(cx).putInt(cy).put(body).array();
+    }
+
+    public static byte[] encodeChunkDrop(int cx, int cy) {
+        return ByteBuffer.allocate(8).putInt(cx).putInt(cy).array();
+    }
+
+    //------------------------obstacles----------------------------//
+    public static byte[] encodeObstacles(List<Obstacle> obstacles) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 + obstacles.size() * OBSTACLE_BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(obstacles.size());
+            for (Obstacle o : obstacles) {
+                out.writeInt(o.x);
+                out.writeInt(o.y);
+                out.writeShort(o.width);
+                out.writeShort(o.height);
+                out.writeByte(o.type);
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream ไม่โยน IOException
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ArrayList<Obstacle> decodeObstacles(ByteBuffer buf) {
+        int count = buf.getShort() & 0xFFFF;
+        ArrayList<Obstacle> obstacles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int x = buf.getInt();
+            int y = buf.getInt();
+            int width = buf.getShort() & 0xFFFF;
+            int height = buf.getShort() & 0xFFFF;
+            int type = buf.get();
+            obstacles.add(new Obstacle(x, y, width, height, type));
+        }
+        return obstacles;
+    }
+
+    //------------------------snapshots----------------------------//
+    /**
+     * เข้ารหัส snapshot เทียบกับ baseline
+     * รายชื่อผู้เล่นของทั้ง gs และ baseline ต้องเรียงตาม id
+     *
+     * @param baseline snapshot ที่ client ack แล้ว หรือ null เพื่อส่ง keyframe
+     */
+    public static byte[] encodeSnapshot(PlayerHandler.GameState gs, PlayerHandler.GameState baseline) {
+        List<PlayerHandler.Player> changed = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        if (baseline == null) {
+            changed = gs.player;
+        } else {
+            // merge สองรายการที่เรียงตาม id แล้ว
+            List<PlayerHandler.Player> cur = gs.player;
+            List<PlayerHandler.Player> old = baseline.player;
+            int i = 0, j = 0;
+            while (i < cur.size() || j < old.size()) {
+                PlayerHandler.Player c = (i < cur.size()) ? cur.get(i) : null;
+                PlayerHandler.Player o = (j < old.size()) ? old.get(j) : null;
+                if (o == null || (c != null && c.id < o.id)) {
+                    changed.add(c);
+                    i++;
+                } else if (c == null || o.id < c.id) {
+                    removed.add(o.id);
+                    j++;
+                } else {
+                    if (!sameState(c, o)) changed.add(c);
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                SNAPSHOT_HEADER_BYTES + changed.size() * PLAYER_BYTES + removed.size() * 4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(gs.seq);
+            out.writeInt(baseline == null ? NO_BASELINE : baseline.seq);
+            out.writeShort(gs.remainingSeconds);
+            out.writeByte((gs.gameStarted ? GAME_STARTED : 0) | (gs.gameover ? GAME_OVER : 0));
+            out.writeInt(gs.winnerId);
+
+            out.writeShort(changed.size());
+            for (PlayerHandler.Player p : changed) {
+                out.writeInt(p.id);
+                out.writeInt(p.x);
+                out.writeInt(p.y);
+                out.writeShort(p.score);
+                out.writeByte((p.isTagger ? PLAYER_TAGGER : 0) | (p.isReady ? PLAYER_READY : 0));
+                out.writeInt(p.lastInputSeq);
+            }
+
+            out.writeShort(removed.size());
+            for (int id : removed) {
+                out.writeInt(id);
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream ไม่โยน IOException
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * ถอดรหัส snapshot และประกอบกับ baseline (ถ้าเป็น delta)
+     *
+     * @param history ใช้หา snapshot ตาม seq ที่เคยได้รับ (คืนค่า null ถ้าไม่มีแล้ว)
+     * @return snapshot ที่สมบูรณ์ หรือ null ถ้าไม่มี baseline ที่ delta อ้างถึง
+     */
+    public static PlayerHandler.GameState decodeSnapshot(ByteBuffer buf, IntFunction<PlayerHandler.GameState> history) {
+        int seq = buf.getInt();
+        int baseSeq = buf.getInt();
+        int remainingSeconds = buf.getShort();
+        int flags = buf.get();
+        int winner = buf.getInt();
+
+        PlayerHandler.GameState baseline = null;
+        if (baseSeq != NO_BASELINE) {
+            baseline = history.apply(baseSeq);
+            if (baseline == null) return null;
+        }
+
+        int changedCount = buf.getShort() & 0xFFFF;
+        ArrayList<PlayerHandler.Player> changed = new ArrayList<>(changedCount);
+        for (int i = 0; i < changedCount; i++) {
+            int id = buf.getInt();
+            int x = buf.getInt();
+            int y = buf.getInt();
+            int score = buf.getShort() & 0xFFFF;
+            int pf = buf.get();
+            int lastInputSeq = buf.getInt();
+            PlayerHandler.Player p = new PlayerHandler.Player(id, x, y, (pf & PLAYER_TAGGER) != 0);
+            p.score = score;
+            p.isReady = (pf & PLAYER_READY) != 0;
+            p.lastInputSeq = lastInputSeq;
+            changed.add(p);
+        }
+        int removedCount = buf.getShort() & 0xFFFF;
+        Set<Integer> removed = new HashSet<>();
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(buf.getInt());
+        }
+
+        ArrayList<PlayerHandler.Player> players;
+        if (baseline == null) {
+            players = changed;
+        } else {
+            // ผู้เล่นที่ไม่เปลี่ยนใช้ object เดิมจาก baseline ได้เลย (ไม่มีใครแก้ไขมัน)
+            players = new ArrayList<>(baseline.player.size() + changed.size());
+            int i = 0;
+            for (PlayerHandler.Player o : baseline.player) {
+                while (i < changed.size() && changed.get(i).id < o.id) {
+                    players.add(changed.get(i++));
+                }
+                if (i < changed.size() && changed.get(i).id == o.id) {
+                    players.add(changed.get(i++));
+                } else if (!removed.contains(o.id)) {
+                    players.add(o);
+                }
+            }
+            while (i < changed.size()) {
+                players.add(changed.get(i++));
+            }
+        }
+
+        PlayerHandler.GameState gs = new PlayerHandler.GameState(players, null, remainingSeconds,
+                (flags & GAME_OVER) != 0, winner, (flags & GAME_STARTED) != 0);
+        gs.seq = seq;
+        return gs;
+    }
+
+    private static boolean sameState(PlayerHandler.Player a, PlayerHandler.Player b) {
+        return a.x == b.x && a.y == b.y && a.score == b.score
+                && a.isTagger == b.isTagger && a.isReady == b.isReady
+                && a.lastInputSeq == b.lastInputSeq;
+    }
+}
\ No newline at end of file
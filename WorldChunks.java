@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ผังสิ่งกีดขวางของห้องที่แบ่งเป็น chunk สี่เหลี่ยมจัตุรัสขนาด chunkSize สำหรับส่งให้ client ทีละส่วน
+ *
+ * สิ่งกีดขวางแต่ละชิ้นอยู่ใน chunk ของมุมซ้ายบน (ชิ้นที่คร่อมขอบ chunk จึงยังอยู่ chunk เดียว)
+ * chunk เก็บเป็น frame MSG_CHUNK ที่เข้ารหัสไว้แล้ว (13 ไบต์ต่อชิ้น ไม่มี object ต่อชิ้น)
+ * chunk ที่ว่างเป็น null แผนที่ใหญ่มากจึงไม่เปลือง memory ต่อห้อง และทุก client ใช้ frame เดียวกันได้
+ * สร้างครั้งเดียวตอน spawnObstacles() และไม่ถูกแก้ไขอีก อ่านได้จากหลาย thread โดยไม่ต้องล็อก
+ *
+ * กล้องของ ClientGame และ chunk ที่ server ส่งให้คำนวณด้วย cameraOrigin() ชุดเดียวกัน
+ */
+public final class WorldChunks {
+
+    public static int chunkSize = Integer.getInteger("tag.chunkSize", 512);
+
+    final int width;
+    final int height;
+    final int size;
+    private final int cols;
+    private final int rows;
+    // index = cy * cols + cx
+    private final OutboundQueue.Frame[] frames;
+
+    public WorldChunks(List<Obstacle> obstacles, int width, int height, int size) {
+        this.width = width;
+        this.height = height;
+        this.size = size;
+        this.cols = Math.max(1, (width + size - 1) / size);
+        this.rows = Math.max(1, (height + size - 1) / size);
+
+        List<List<Obstacle>> byChunk = new ArrayList<>(cols * rows);
+        for (int c = 0; c < cols * rows; c++) byChunk.add(null);
+        for (Obstacle o : obstacles) {
+            int c = clampRow(o.y / size) * cols + clampCol(o.x / size);
+            if (byChunk.get(c) == null) byChunk.set(c, new ArrayList<>());
+            byChunk.get(c).add(o);
+        }
+        frames = new OutboundQueue.Frame[cols * rows];
+        for (int c = 0; c < frames.length; c++) {
+            List<Obstacle> list = byChunk.get(c);
+            if (list != null) frames[c] = new OutboundQueue.Frame(WireProtocol.MSG_CHUNK, WireProtocol.encodeChunk(c % cols, c / cols, list));
+        }
+    }
+
+    int cols() {
+        return cols;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /**
+     * frame MSG_CHUNK ของ chunk นี้ หรือ null ถ้า chunk ว่าง / อยู่นอกแผนที่
+     */
+    OutboundQueue.Frame frame(int cx, int cy) {
+        if (cx < 0 || cy < 0 || cx >= cols || cy >= rows) return null;
+        return frames[cy * cols + cx];
+    }
+
+    private int clampCol(int cx) {
+        return Math.max(0, Math.min(cols - 1, cx));
+    }
+
+    private int clampRow(int cy) {
+        return Math.max(0, Math.min(rows - 1, cy));
+    }
+
+    //------------------------shared with the client----------------------------//
+    /**
+     * มุมซ้ายบนของกล้อง (แกนเดียว) ที่ให้ผู้เล่นอยู่กลางจอแต่ไม่เลยขอบแผนที่
+     * ถ้าแผนที่เล็กกว่าจอ กล้องอยู่ที่ 0 เสมอ
+     */
+    public static int cameraOrigin(int player, int view, int world) {
+        int origin = player + PlayerHandler.PLAYER_SIZE / 2 - view / 2;
+        return Math.max(0, Math.min(origin, world - view));
+    }
+
+    /**
+     * chunk แรกของช่วงที่ต้องโหลดรอบกล้อง (แกนเดียว): chunk ที่ทับจอบวกรอบนอกอีก ring ชั้น
+     * ring = 1 ใช้ตอนโหลด (สิ่งกีดขวางที่มุมซ้ายบนอยู่ chunk ข้างๆ แต่ยื่นเข้ามาในจอ)
+     * ring = 2 ใช้ตอนเอาออก เพื่อไม่ให้ chunk ตรงขอบถูกส่งซ้ำไปมา
+     */
+    public static int firstChunk(int cameraOrigin, int size, int ring) {
+        return Math.floorDiv(cameraOrigin, size) - ring;
+    }
+
+    public static int lastChunk(int cameraOrigin, int view, int size, int ring) {
+        return Math.floorDiv(cameraOrigin + view - 1, size) + ring;
+    }
+
+    public static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int keyY(long key) {
+        return (int) key;
+    }
+}
\ No newline at end of file
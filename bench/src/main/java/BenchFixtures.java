@@ -0,0 +1,238 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import tagbench.GameFixtures;
+
+/**
+ * โค้ดเกมเบื้องหลัง benchmark ใน package tagbench (ดู GameFixtures)
+ *
+ * คลาสนี้อยู่ default package จึงเรียก API ระดับ package-private ของเกมได้
+ * ทุก case เตรียมข้อมูลตอนสร้าง เมธอดที่ถูกวัดทำแค่งานของเกม
+ */
+public final class BenchFixtures implements GameFixtures {
+
+    private static final long SEED = 42;
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    /**
+     * วางสิ่งกีดขวางแบบสุ่ม (ทับกันได้) เป้าหมายวนจากตำแหน่งสุ่มที่เตรียมไว้ 1024 จุด
+     */
+    @Override
+    public MovementCase movement(int obstacles) {
+        Random rand = new Random(SEED);
+        List<Obstacle> layout = new ArrayList<>(obstacles);
+        for (int i = 0; i < obstacles; i++) {
+            int type = rand.nextInt(Room.NUM_OBSTACLE_TYPES);
+            int w = Room.OBSTACLE_TYPE_SIZES[type][0];
+            int h = Room.OBSTACLE_TYPE_SIZES[type][1];
+            layout.add(new Obstacle(rand.nextInt(Server.MAP_WIDTH - w), rand.nextInt(Server.MAP_HEIGHT - h), w, h, type));
+        }
+        ObstacleGrid grid = new ObstacleGrid(layout, Server.MAP_WIDTH, Server.MAP_HEIGHT, ObstacleGrid.DEFAULT_CELL_SIZE);
+        int[] tx = new int[1024];
+        int[] ty = new int[1024];
+        for (int i = 0; i < tx.length; i++) {
+            tx[i] = rand.nextInt(Server.MAP_WIDTH);
+            ty[i] = rand.nextInt(Server.MAP_HEIGHT);
+        }
+        PlayerHandler.Player player = new PlayerHandler.Player(0, 0, 0, false);
+        return new MovementCase() {
+            private int next = 0;
+
+            @Override
+            public boolean moveNext() {
+                int i = next++ & (tx.length - 1);
+                return Movement.trySetPosition(player, tx[i], ty[i], grid);
+            }
+        };
+    }
+
+    /**
+     * PlayerHandler.resolveContacts (checkTag + checkPlayerCollisions เดิม) ผู้เล่นสุ่มบนแผนที่ขนาดจริง
+     */
+    @Override
+    public ContactCase contacts(int players) {
+        Room room = quietly(() -> new Room("bench"));
+        ObstacleGrid grid = room.obstacleGrid();
+        Random rand = new Random(SEED);
+        PlayerStore store = new PlayerStore();
+        int[] x0 = new int[players];
+        int[] y0 = new int[players];
+        for (int i = 0; i < players; i++) {
+            x0[i] = rand.nextInt(Server.MAP_WIDTH - PlayerHandler.PLAYER_SIZE);
+            y0[i] = rand.nextInt(Server.MAP_HEIGHT - PlayerHandler.PLAYER_SIZE);
+            store.add(i, x0[i], y0[i], null);
+        }
+        PlayerSpatialHash hash = new PlayerSpatialHash();
+        return new ContactCase() {
+            @Override
+            public void reset() {
+                // id i อยู่ slot i เพราะเพิ่มตามลำดับและไม่มีใครออก
+                for (int i = 0; i < players; i++) {
+                    store.x[i] = x0[i];
+                    store.y[i] = y0[i];
+                    store.setTagger(i, i == 0);
+                    store.score[i] = 0;
+                }
+            }
+
+            @Override
+            public void resolve() {
+                PlayerHandler.resolveContacts(store, hash, grid);
+            }
+        };
+    }
+
+    @Override
+    public Object newRoom() {
+        return new Room("bench");
+    }
+
+    @Override
+    public SnapshotCase snapshots(int players) {
+        Random rand = new Random(SEED);
+        PlayerHandler.GameState base = snapshot(players, 1, rand);
+        PlayerHandler.GameState current = moved(base, 2, rand);
+        byte[] keyframe = WireProtocol.encodeSnapshot(current, null);
+        byte[] delta = WireProtocol.encodeSnapshot(current, base);
+        return new SnapshotCase() {
+            @Override
+            public byte[] encodeKeyframe() {
+                return WireProtocol.encodeSnapshot(current, null);
+            }
+
+            @Override
+            public byte[] encodeDelta() {
+                return WireProtocol.encodeSnapshot(current, base);
+            }
+
+            @Override
+            public Object decodeKeyframe() {
+                return WireProtocol.decodeSnapshot(ByteBuffer.wrap(keyframe), seq -> null);
+            }
+
+            @Override
+            public Object decodeDelta() {
+                return WireProtocol.decodeSnapshot(ByteBuffer.wrap(delta), seq -> seq == base.seq ? base : null);
+            }
+        };
+    }
+
+    /**
+     * client แต่ละรายเป็น sink ในหน่วยความจำที่ ack ทุก snapshot ทันที (จึงได้ delta เหมือน client ที่เน็ตดี)
+     * ทุก tick ผู้เล่นทุกคนส่ง input หนึ่ง frame ทำให้ snapshot เปลี่ยนทุก tick เหมือนเกมจริง
+     *
+     * นาฬิกาของเกมนับวินาทีทุก Server.tickRate tick จึงตั้ง Server.tickRate ให้สูงมากครั้งเดียวตอนสร้าง
+     * เพื่อไม่ให้เกมหมดเวลาระหว่างวัด แล้วคืนค่าเดิมใน close() (benchmark อื่นใน fork เดียวกันจึงไม่ได้รับผล)
+     */
+    @Override
+    public BroadcastCase broadcast(int clients) {
+        int tickRate = Server.tickRate;
+        Server.tickRate = Integer.MAX_VALUE;
+        Room room = quietly(() -> {
+            Room r = new Room("bench");
+            for (int id = 0; id < clients; id++) {
+                SinkConnection sink = new SinkConnection();
+                PlayerHandler.ClientSession session = new PlayerHandler.ClientSession(id, sink);
+                sink.session = session;
+                r.join(session);
+                r.queueReady(id);
+            }
+            // tick แรกรับ READY ของทุกคนแล้วเริ่มเกม
+            r.tick();
+            return r;
+        });
+        int[] buttons = {WireProtocol.INPUT_UP, WireProtocol.INPUT_DOWN, WireProtocol.INPUT_LEFT, WireProtocol.INPUT_RIGHT};
+        return new BroadcastCase() {
+            private int seq = 0;
+
+            @Override
+            public void tick() {
+                seq++;
+                for (int id = 0; id < clients; id++) {
+                    room.queueInput(id, seq, buttons[(seq + id) & 3]);
+                }
+                room.tick();
+            }
+
+            @Override
+            public void close() {
+                Server.tickRate = tickRate;
+            }
+        };
+    }
+
+    //------------------------helpers----------------------------//
+    private static PlayerHandler.GameState snapshot(int players, int seq, Random rand) {
+        ArrayList<PlayerHandler.Player> list = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            PlayerHandler.Player p = new PlayerHandler.Player(i, rand.nextInt(Server.MAP_WIDTH), rand.nextInt(Server.MAP_HEIGHT), i == 0);
+            p.score = rand.nextInt(100);
+            p.isReady = true;
+            p.lastInputSeq = rand.nextInt(1000);
+            list.add(p);
+        }
+        PlayerHandler.GameState gs = new PlayerHandler.GameState(list, null, 42, false, -1, true);
+        gs.seq = seq;
+        return gs;
+    }
+
+    private static PlayerHandler.GameState moved(PlayerHandler.GameState base, int seq, Random rand) {
+        ArrayList<PlayerHandler.Player> list = new ArrayList<>(base.player.size());
+        for (PlayerHandler.Player old : base.player) {
+            PlayerHandler.Player p = new PlayerHandler.Player(old);
+            if (rand.nextBoolean()) {
+                p.x += Movement.PLAYER_SPEED;
+                p.lastInputSeq++;
+            }
+            list.add(p);
+        }
+        PlayerHandler.GameState gs = new PlayerHandler.GameState(list, null, base.remainingSeconds, false, -1, true);
+        gs.seq = seq;
+        return gs;
+    }
+
+    // Room พิมพ์ log ทุกครั้งที่สร้างและเริ่มเกม ซึ่งจะท่วม output ของ JMH
+    private static <T> T quietly(Supplier<T> action) {
+        PrintStream out = System.out;
+        System.setOut(NULL_OUT);
+        try {
+            return action.get();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * ClientConnection ที่แค่นับไบต์และ ack snapshot ทันที (ไม่มี socket)
+     */
+    static final class SinkConnection implements ClientConnection {
+        private final OutboundQueue outbound = new OutboundQueue();
+        PlayerHandler.ClientSession session;
+        long bytes;
+
+        @Override
+        public void sendHandshake(int playerId) {}
+
+        @Override
+        public void sendFrame(byte type, byte[] payload) {
+            bytes += payload.length;
+            if (type == WireProtocol.MSG_SNAPSHOT) {
+                // 4 ไบต์แรกของ snapshot คือ seq
+                session.onAck(ByteBuffer.wrap(payload).getInt(0));
+            }
+        }
+
+        @Override
+        public OutboundQueue outbound() {
+            return outbound;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package tagbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * หนึ่ง tick ของห้อง (ใช้ input, ชน/แท็ก แล้ว broadcast snapshot) ไปยัง client ในหน่วยความจำ
+ * ตามจำนวน client ในห้อง
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int clients;
+
+    private GameFixtures.BroadcastCase room;
+
+    @Setup
+    public void setup() {
+        room = GameFixtures.load().broadcast(clients);
+    }
+
+    @TearDown
+    public void tearDown() {
+        room.close();
+    }
+
+    @Benchmark
+    public void tick() {
+        room.tick();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package tagbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * การแท็กและการผลักผู้เล่นที่ชนกันหนึ่ง tick (เดิมคือ checkTag / checkPlayerCollisions) ตามจำนวนผู้เล่น
+ *
+ * ผู้เล่นถูกคืนตำแหน่งเดิมก่อนทุกการเรียกใน @Setup(Level.Invocation) นอกเวลาที่วัด
+ * (JMH จับเวลาแยกทุกการเรียก ผลของ players น้อยๆ จึงรวม overhead ของการจับเวลาราวสิบกว่า ns)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactBenchmark {
+
+    @Param({"8", "64", "256"})
+    public int players;
+
+    private GameFixtures.ContactCase contacts;
+
+    @Setup
+    public void setup() {
+        contacts = GameFixtures.load().contacts(players);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        contacts.reset();
+    }
+
+    @Benchmark
+    public void resolveContacts() {
+        contacts.resolve();
+    }
+}
\ No newline at end of file
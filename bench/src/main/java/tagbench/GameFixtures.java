@@ -0,0 +1,88 @@
+package tagbench;
+
+/**
+ * งานที่ benchmark วัด โดยมี BenchFixtures (default package) เป็นผู้ implement
+ *
+ * JMH ไม่ยอมให้ benchmark อยู่ใน default package และคลาสใน package อื่นอ้างถึง default package ไม่ได้
+ * แต่คลาสใน default package import interface นี้ได้ BenchFixtures จึง implement interface นี้
+ * ชื่อและชนิดของทุก fixture ถูกตรวจตอน compile เหลือ reflection แค่การสร้าง BenchFixtures ครั้งเดียวใน load()
+ *
+ * เมธอดที่คืน *Case เตรียมข้อมูลทั้งหมดไว้ก่อน (เรียกจาก @Setup) ใน @Benchmark เรียกแค่เมธอดของ case
+ * ทุกเมธอดใช้ seed ตายตัว ผลจึงเทียบกันข้ามเวอร์ชันได้
+ */
+public interface GameFixtures {
+
+    /**
+     * Movement.trySetPosition บนแผนที่ที่มีสิ่งกีดขวาง obstacles ชิ้น
+     */
+    MovementCase movement(int obstacles);
+
+    /**
+     * การแท็กและการผลักของหนึ่ง tick บน PlayerStore แบบเดียวกับที่ Room ใช้
+     */
+    ContactCase contacts(int players);
+
+    /**
+     * สร้างห้องใหม่หนึ่งห้อง (spawnObstacles ทำงานใน constructor ของ Room ซึ่งพิมพ์ log ลง System.out)
+     */
+    Object newRoom();
+
+    /**
+     * snapshot ของผู้เล่น players คน ทั้งแบบ keyframe และ delta ที่ผู้เล่นประมาณครึ่งหนึ่งขยับ
+     */
+    SnapshotCase snapshots(int players);
+
+    /**
+     * ห้องที่เริ่มเกมแล้วกับ client clients ราย (ต้อง close() เมื่อเลิกใช้)
+     */
+    BroadcastCase broadcast(int clients);
+
+    interface MovementCase {
+        /**
+         * ย้ายผู้เล่นไปยังเป้าหมายถัดไป (วนจากตำแหน่งสุ่มที่เตรียมไว้)
+         */
+        boolean moveNext();
+    }
+
+    interface ContactCase {
+        /**
+         * คืนตำแหน่ง/ผู้ไล่/คะแนนของทุกคนเป็นค่าเริ่มต้น (ไม่อย่างนั้นผู้เล่นจะถูกผลักจนแยกกันหมดหลังรอบแรกๆ)
+         */
+        void reset();
+
+        void resolve();
+    }
+
+    interface SnapshotCase {
+        byte[] encodeKeyframe();
+
+        byte[] encodeDelta();
+
+        Object decodeKeyframe();
+
+        Object decodeDelta();
+    }
+
+    interface BroadcastCase {
+        /**
+         * ทุกคนส่ง input หนึ่ง frame แล้วห้องเดินหนึ่ง tick (ใช้ input, ชน/แท็ก, broadcast snapshot)
+         */
+        void tick();
+
+        /**
+         * คืนค่า static ของเกมที่ case นี้ตั้งไว้ตอนสร้าง
+         */
+        void close();
+    }
+
+    /**
+     * สร้าง BenchFixtures (อยู่ใน default package จึงอ้างชื่อตรงๆ จากที่นี่ไม่ได้)
+     */
+    static GameFixtures load() {
+        try {
+            return Class.forName("BenchFixtures").asSubclass(GameFixtures.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchFixtures is not on the classpath", e);
+        }
+    }
+}
\ No newline at end of file
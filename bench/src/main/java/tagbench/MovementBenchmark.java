@@ -0,0 +1,42 @@
+package tagbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * การย้ายผู้เล่นหนึ่งครั้ง (ตรวจขอบแผนที่ + สิ่งกีดขวางผ่าน ObstacleGrid) ตามจำนวนสิ่งกีดขวาง
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovementBenchmark {
+
+    @Param({"15", "100", "1000"})
+    public int obstacles;
+
+    private GameFixtures.MovementCase movement;
+
+    @Setup
+    public void setup() {
+        movement = GameFixtures.load().movement(obstacles);
+    }
+
+    @Benchmark
+    public boolean trySetPosition() {
+        return movement.moveNext();
+    }
+}
\ No newline at end of file
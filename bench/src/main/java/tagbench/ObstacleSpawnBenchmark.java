@@ -0,0 +1,51 @@
+package tagbench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * การสร้างห้องใหม่ ซึ่งส่วนใหญ่คือการสุ่มวางสิ่งกีดขวาง (Room.spawnObstacles) และสร้าง ObstacleGrid
+ *
+ * Room พิมพ์ log ทุกครั้งที่สร้าง System.out จึงถูกปิดตลอดทั้ง trial (ตั้งและคืนค่านอกเวลาที่วัด)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObstacleSpawnBenchmark {
+
+    private GameFixtures fixtures;
+    private PrintStream out;
+
+    @Setup
+    public void setup() {
+        fixtures = GameFixtures.load();
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public Object newRoom() {
+        return fixtures.newRoom();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package tagbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * เข้ารหัส / ถอดรหัส snapshot (PlayerHandler.GameState) ด้วย WireProtocol ทั้งแบบ keyframe และ delta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotCodecBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int players;
+
+    private GameFixtures.SnapshotCase snapshots;
+
+    @Setup
+    public void setup() {
+        snapshots = GameFixtures.load().snapshots(players);
+    }
+
+    @Benchmark
+    public byte[] encodeKeyframe() {
+        return snapshots.encodeKeyframe();
+    }
+
+    @Benchmark
+    public byte[] encodeDelta() {
+        return snapshots.encodeDelta();
+    }
+
+    @Benchmark
+    public Object decodeKeyframe() {
+        return snapshots.decodeKeyframe();
+    }
+
+    @Benchmark
+    public Object decodeDelta() {
+        return snapshots.decodeDelta();
+    }
+}
\ No newline at end of file